@@ -0,0 +1,73 @@
+package tk.jasoryeh.conductor.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import tk.jasoryeh.conductor.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deleting generated directory trees, a fresh one for every invocation.
+ *
+ * `wide` is a few directories of many files, like a plugins folder; `deep` is files spread over nested directories,
+ * like an extracted distribution.
+ *
+ * Run with `mvn package && java -jar target/benchmarks.jar FileDeletion`
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FileDeletionBenchmark {
+    @Param({"wide", "deep"})
+    public String shape;
+    @Param({"1000", "10000"})
+    public int files;
+
+    private Path base;
+    private File tree;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        SyntheticTemplates.quietLogs();
+        this.base = Files.createTempDirectory("conductor-delete");
+    }
+
+    @Setup(Level.Invocation)
+    public void createTree() throws IOException {
+        Path root = Files.createDirectories(this.base.resolve("tree"));
+        byte[] content = new byte[256];
+        for (int i = 0; i < this.files; i++) {
+            Path directory = "wide".equals(this.shape)
+                    ? root.resolve("dir" + (i % 4))
+                    // 10 files per directory, 10 directories per directory
+                    : root.resolve(deepPath(i / 10));
+            Files.createDirectories(directory);
+            Files.write(directory.resolve("file" + i + ".bin"), content);
+        }
+        this.tree = root.toFile();
+    }
+
+    private static String deepPath(int directory) {
+        StringBuilder path = new StringBuilder();
+        for (int remaining = directory; remaining > 0; remaining /= 10) {
+            path.insert(0, "d" + (remaining % 10) + File.separator);
+        }
+        return path.append("files").toString();
+    }
+
+    @Benchmark
+    public boolean delete() {
+        return FileUtils.delete(this.tree);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        FileUtils.delete(this.base.toFile());
+    }
+}
@@ -0,0 +1,46 @@
+package tk.jasoryeh.conductor.benchmarks;
+
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import tk.jasoryeh.conductor.V2FileSystemObject;
+import tk.jasoryeh.conductor.V2Template;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the object model of a finalized filesystem definition and parsing it, like a boot does before preparing
+ * anything: names resolved, plugins created, children of every folder built.
+ *
+ * Run with `mvn package && java -jar target/benchmarks.jar FilesystemModel`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilesystemModelBenchmark {
+    /**
+     * Files and folders in the tree
+     */
+    @Param({"10", "1000", "100000"})
+    public int nodes;
+
+    private V2Template template;
+    private JsonObject definition;
+
+    @Setup
+    public void setup() {
+        SyntheticTemplates.quietLogs();
+        this.definition = SyntheticTemplates.filesystem(this.nodes, "");
+        this.template = SyntheticTemplates.template("model", this.definition);
+    }
+
+    @Benchmark
+    public List<V2FileSystemObject> buildAndParse() {
+        List<V2FileSystemObject> layout = V2FileSystemObject.buildFilesystemModel(this.template, this.definition);
+        layout.forEach(V2FileSystemObject::parse);
+        return layout;
+    }
+}
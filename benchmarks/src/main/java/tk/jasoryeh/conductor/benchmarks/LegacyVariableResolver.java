@@ -0,0 +1,30 @@
+package tk.jasoryeh.conductor.benchmarks;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Variable resolution as V2Template did it before V2VariableResolver, two regular expression passes per variable.
+ */
+public class LegacyVariableResolver {
+    private final Map<String, String> environment;
+    private final Map<String, String> variables;
+
+    public LegacyVariableResolver(Map<String, String> environment, Map<String, String> variables) {
+        this.environment = environment;
+        this.variables = variables;
+    }
+
+    public String resolve(final String inText) {
+        String temp = inText.replaceAll(Pattern.quote("{NEWLINE}"), System.lineSeparator());
+        for (Map.Entry<String, String> varEntry : this.environment.entrySet()) {
+            temp = temp.replaceAll(Pattern.quote(String.format("{{$%s$}}", varEntry.getKey())), varEntry.getValue())
+                    .replaceAll(Pattern.quote(String.format("{{%s}}", varEntry.getKey())), varEntry.getValue());
+        }
+        for (Map.Entry<String, String> varEntry : this.variables.entrySet()) {
+            temp = temp.replaceAll(Pattern.quote(String.format("{{!%s!}}", varEntry.getKey())), varEntry.getValue())
+                    .replaceAll(Pattern.quote(String.format("{{%s}}", varEntry.getKey())), varEntry.getValue());
+        }
+        return temp;
+    }
+}
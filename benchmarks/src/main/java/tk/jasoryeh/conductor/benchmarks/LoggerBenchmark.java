@@ -0,0 +1,65 @@
+package tk.jasoryeh.conductor.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import tk.jasoryeh.conductor.log.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building log messages from their parts, and what messages below the log level cost the code logging them.
+ *
+ * Run with `mvn package && java -jar target/benchmarks.jar Logger`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggerBenchmark {
+    /**
+     * Number of parts of a message
+     */
+    @Param({"1", "3", "8"})
+    public int parts;
+
+    private Object[] message;
+    private Logger logger;
+    private String name;
+
+    @Setup
+    public void setup() {
+        SyntheticTemplates.quietLogs();
+        this.message = new Object[this.parts];
+        for (int i = 0; i < this.parts; i++) {
+            // strings and numbers, like the messages of conductor
+            this.message[i] = i % 2 == 0 ? "part-" + i : (Object) (i * 1000L);
+        }
+        this.logger = new Logger(new Logger("Parent"), "Child");
+        this.name = "server.properties";
+    }
+
+    @Benchmark
+    public String getMessage() {
+        return Messages.of(this.message);
+    }
+
+    @Benchmark
+    public void debugDisabled() {
+        this.logger.debug("Found file: " + this.name);
+    }
+
+    @Benchmark
+    public void debugSupplierDisabled() {
+        this.logger.debug(() -> "Found file: " + this.name);
+    }
+
+    /**
+     * Access to {@link Logger#getMessage(Object...)}
+     */
+    private static class Messages extends Logger {
+        static String of(Object... objects) {
+            return getMessage(objects);
+        }
+    }
+}
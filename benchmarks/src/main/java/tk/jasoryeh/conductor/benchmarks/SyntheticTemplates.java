@@ -0,0 +1,117 @@
+package tk.jasoryeh.conductor.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import tk.jasoryeh.conductor.V2Template;
+import tk.jasoryeh.conductor.log.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generated templates and filesystem definitions shaped like real ones: folders of text files, some of them
+ * downloaded, with variables in names and contents.
+ */
+public class SyntheticTemplates {
+    /**
+     * Children per folder, the first {@link #SUBFOLDERS} of them are folders while the tree is not complete
+     */
+    public static final int FANOUT = 10;
+    public static final int SUBFOLDERS = 3;
+
+    /**
+     * Keep the benchmarked code from queueing its info messages, which would measure the console instead
+     */
+    public static void quietLogs() {
+        Logger.configure(Logger.Level.WARN, Logger.Format.PLAIN);
+    }
+
+    /**
+     * A filesystem definition of folders with {@link #FANOUT} children each, about log3(nodes) folders deep
+     * @param nodes number of files and folders in the tree
+     * @param prefix prefix of the names, so trees of different templates only share the folders
+     */
+    public static JsonObject filesystem(int nodes, String prefix) {
+        JsonObject root = new JsonObject();
+        // breadth first, so every level is full before the next one starts
+        List<JsonObject> folders = new ArrayList<>(Collections.singletonList(root));
+        int created = 0;
+        for (int next = 0; created < nodes; next++) {
+            JsonObject folder = folders.get(next);
+            for (int i = 0; i < FANOUT && created < nodes; i++, created++) {
+                if (i < SUBFOLDERS && nodes - created > FANOUT) {
+                    JsonObject content = new JsonObject();
+                    folder.add("dir" + i, folder(content));
+                    folders.add(content);
+                } else {
+                    folder.add(prefix + "file" + created + "-{{variable" + (created % 20) + "}}.txt", file(created));
+                }
+            }
+        }
+        return root;
+    }
+
+    private static JsonObject folder(JsonObject content) {
+        JsonObject folder = new JsonObject();
+        folder.addProperty("type", "folder");
+        folder.add("content", content);
+        return folder;
+    }
+
+    private static JsonObject file(int index) {
+        JsonObject file = new JsonObject();
+        file.addProperty("type", "file");
+        if (index % 10 == 0) {
+            JsonObject content = new JsonObject();
+            content.addProperty("plugins", "http");
+            content.addProperty("http", "https://static.example.org/files/{{variable" + (index % 20) + "}}/" + index + ".jar");
+            file.add("content", content);
+        } else {
+            JsonArray lines = new JsonArray();
+            lines.add("key" + index + "={{variable" + (index % 20) + "}}");
+            lines.add("home={{$HOME$}}");
+            file.add("content", lines);
+        }
+        return file;
+    }
+
+    /**
+     * A template of a filesystem definition, with 20 variables
+     * @param name name of the template
+     * @param filesystem filesystem definition, see {@link #filesystem(int, String)}
+     */
+    public static V2Template template(String name, JsonObject filesystem) {
+        JsonObject metadata = new JsonObject();
+        metadata.addProperty("version", 1);
+        metadata.addProperty("name", name);
+        JsonObject variables = new JsonObject();
+        for (int i = 0; i < 20; i++) {
+            variables.addProperty("variable" + i, name + "-value-" + i);
+        }
+        metadata.add("variables", variables);
+
+        JsonObject root = new JsonObject();
+        root.add("_conductor", metadata);
+        root.add("filesystem", filesystem);
+        return new V2Template(null, root);
+    }
+
+    /**
+     * Templates including each other, each adding files to the same folders
+     * @param depth number of templates in the chain
+     * @param nodes number of files and folders each template defines
+     * @return the first template, including the second, which includes the third...
+     */
+    public static V2Template includeChain(int depth, int nodes) {
+        V2Template included = null;
+        for (int i = depth - 1; i >= 0; i--) {
+            V2Template template = template("template" + i, filesystem(nodes, "t" + i + "-"));
+            template.includes = included == null
+                    ? new ArrayList<>()
+                    : new ArrayList<>(Collections.singletonList(included));
+            included = template;
+        }
+        return included;
+    }
+}
@@ -0,0 +1,60 @@
+package tk.jasoryeh.conductor.benchmarks;
+
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+import tk.jasoryeh.conductor.V2Template;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging the filesystem definitions of a chain of includes into the finalized definition of the including template,
+ * and resolving variables through a template once its includes were merged.
+ *
+ * Run with `mvn package && java -jar target/benchmarks.jar TemplateMerge`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateMergeBenchmark {
+    /**
+     * Number of templates in the include chain, including the root template
+     */
+    @Param({"1", "10", "50"})
+    public int depth;
+    /**
+     * Files and folders defined by each template
+     */
+    @Param({"100"})
+    public int nodes;
+
+    private V2Template template;
+    private MethodHandle finalizedDefinition;
+
+    @Setup
+    public void setup() throws Throwable {
+        SyntheticTemplates.quietLogs();
+        this.template = SyntheticTemplates.includeChain(this.depth, this.nodes);
+        // private, it is only ever called through buildFilesystemModel
+        Method method = V2Template.class.getDeclaredMethod("getFinalizedFilesystemDefinition");
+        method.setAccessible(true);
+        this.finalizedDefinition = MethodHandles.lookup().unreflect(method);
+        // merges the variables of the includes, later calls find them merged already
+        this.mergeIncludes();
+    }
+
+    @Benchmark
+    public JsonObject mergeIncludes() throws Throwable {
+        return (JsonObject) this.finalizedDefinition.invoke(this.template);
+    }
+
+    @Benchmark
+    public String resolveName() {
+        return this.template.resolveVariables("server-{{variable3}}-{{!variable7!}}-{{$HOME$}}.properties");
+    }
+}
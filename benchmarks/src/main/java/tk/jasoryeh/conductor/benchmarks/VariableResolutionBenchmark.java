@@ -0,0 +1,74 @@
+package tk.jasoryeh.conductor.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import tk.jasoryeh.conductor.V2VariableResolver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of variables in a file name and in a large inline file, with as many environment variables as a
+ * typical CI host.
+ *
+ * Run with `mvn package && java -jar target/benchmarks.jar VariableResolution`
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VariableResolutionBenchmark {
+    @Param({"150"})
+    public int environmentSize;
+
+    private String name;
+    private String content;
+    private LegacyVariableResolver legacy;
+    private V2VariableResolver resolver;
+
+    @Setup
+    public void setup() {
+        Map<String, String> environment = new HashMap<>();
+        for (int i = 0; i < this.environmentSize; i++) {
+            environment.put("ENV_VARIABLE_" + i, "/opt/value/" + i);
+        }
+        environment.put("HOME", "/home/conductor");
+        Map<String, String> variables = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            variables.put("variable" + i, "value-" + i);
+        }
+
+        this.name = "server-{{variable3}}-{{!variable7!}}.properties";
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            content.append("line ").append(i).append(" = {{variable").append(i % 20).append("}}")
+                    .append(" home={{$HOME$}} plain text that is not a variable { }{NEWLINE}");
+        }
+        this.content = content.toString();
+
+        this.legacy = new LegacyVariableResolver(environment, variables);
+        this.resolver = new V2VariableResolver(environment, variables);
+    }
+
+    @Benchmark
+    public String legacyName() {
+        return this.legacy.resolve(this.name);
+    }
+
+    @Benchmark
+    public String compiledName() {
+        return this.resolver.resolve(this.name);
+    }
+
+    @Benchmark
+    public String legacyContent() {
+        return this.legacy.resolve(this.content);
+    }
+
+    @Benchmark
+    public String compiledContent() {
+        return this.resolver.resolve(this.content);
+    }
+}
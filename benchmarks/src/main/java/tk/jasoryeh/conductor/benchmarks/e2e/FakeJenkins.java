@@ -0,0 +1,145 @@
+package tk.jasoryeh.conductor.benchmarks.e2e;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Serves the parts of the Jenkins REST API jenkins-client uses to download artifacts: jobs, their builds with
+ * artifacts and fingerprints, artifacts and the archive of all artifacts of a build. Every job has a single
+ * successful build, #1. Faults only apply to artifacts and archives.
+ */
+public class FakeJenkins extends StandInServer {
+    public static final int BUILD = 1;
+
+    private static final Pattern ARCHIVE = Pattern.compile("^/job/([^/]+)/(\\d+)/artifact/\\*zip\\*/archive\\.zip$");
+    private static final Pattern ARTIFACT = Pattern.compile("^/job/([^/]+)/(\\d+)/artifact/(.+)$");
+    private static final Pattern BUILD_API = Pattern.compile("^/job/([^/]+)/(\\d+)/api/json$");
+    private static final Pattern JOB_API = Pattern.compile("^/job/([^/]+)/api/json$");
+
+    // job -> artifact name -> content
+    private final Map<String, Map<String, byte[]>> jobs = new ConcurrentHashMap<>();
+
+    public FakeJenkins(Faults faults) throws IOException {
+        super(faults);
+    }
+
+    /**
+     * Serve an artifact of build #1 of a job
+     */
+    public void artifact(String job, String name, byte[] content) {
+        this.jobs.computeIfAbsent(job, key -> new ConcurrentHashMap<>()).put(name, content);
+    }
+
+    @Override
+    protected void respond(HttpExchange exchange, String path) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("X-Jenkins", "2.0");
+        Matcher matcher;
+        if ((matcher = ARCHIVE.matcher(path)).matches() && this.isBuild(matcher)) {
+            this.sendContent(exchange, this.archive(this.jobs.get(matcher.group(1))));
+        } else if ((matcher = ARTIFACT.matcher(path)).matches() && this.isBuild(matcher)
+                && this.jobs.get(matcher.group(1)).containsKey(matcher.group(3))) {
+            this.sendContent(exchange, this.jobs.get(matcher.group(1)).get(matcher.group(3)));
+        } else if ((matcher = BUILD_API.matcher(path)).matches() && this.isBuild(matcher)) {
+            this.sendJson(exchange, this.build(matcher.group(1)).toString());
+        } else if ((matcher = JOB_API.matcher(path)).matches() && this.jobs.containsKey(matcher.group(1))) {
+            this.sendJson(exchange, this.job(matcher.group(1)).toString());
+        } else if (path.equals("/api/json") || path.equals("/")) {
+            JsonObject server = new JsonObject();
+            JsonArray jobs = new JsonArray();
+            for (String job : this.jobs.keySet()) {
+                JsonObject summary = new JsonObject();
+                summary.addProperty("name", job);
+                summary.addProperty("url", this.jobUrl(job));
+                jobs.add(summary);
+            }
+            server.add("jobs", jobs);
+            this.sendJson(exchange, server.toString());
+        } else {
+            this.sendNotFound(exchange);
+        }
+    }
+
+    private boolean isBuild(Matcher matcher) {
+        return this.jobs.containsKey(matcher.group(1)) && Integer.parseInt(matcher.group(2)) == BUILD;
+    }
+
+    private String jobUrl(String job) {
+        return this.url() + "/job/" + job + "/";
+    }
+
+    private JsonObject buildSummary(String job) {
+        JsonObject build = new JsonObject();
+        build.addProperty("number", BUILD);
+        build.addProperty("url", this.jobUrl(job) + BUILD + "/");
+        return build;
+    }
+
+    private JsonObject job(String job) {
+        JsonObject details = new JsonObject();
+        details.addProperty("name", job);
+        details.addProperty("url", this.jobUrl(job));
+        JsonArray builds = new JsonArray();
+        builds.add(this.buildSummary(job));
+        details.add("builds", builds);
+        details.add("lastSuccessfulBuild", this.buildSummary(job));
+        details.add("lastBuild", this.buildSummary(job));
+        return details;
+    }
+
+    private JsonObject build(String job) {
+        JsonObject build = this.buildSummary(job);
+        build.addProperty("result", "SUCCESS");
+        JsonArray artifacts = new JsonArray();
+        JsonArray fingerprints = new JsonArray();
+        for (Map.Entry<String, byte[]> artifact : this.jobs.get(job).entrySet()) {
+            JsonObject details = new JsonObject();
+            details.addProperty("fileName", artifact.getKey());
+            details.addProperty("displayPath", artifact.getKey());
+            details.addProperty("relativePath", artifact.getKey());
+            artifacts.add(details);
+            JsonObject fingerprint = new JsonObject();
+            fingerprint.addProperty("fileName", artifact.getKey());
+            fingerprint.addProperty("hash", md5(artifact.getValue()));
+            fingerprints.add(fingerprint);
+        }
+        build.add("artifacts", artifacts);
+        build.add("fingerprint", fingerprints);
+        return build;
+    }
+
+    private byte[] archive(Map<String, byte[]> artifacts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, byte[]> artifact : artifacts.entrySet()) {
+                zip.putNextEntry(new ZipEntry("archive/" + artifact.getKey()));
+                zip.write(artifact.getValue());
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String md5(byte[] content) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("MD5").digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package tk.jasoryeh.conductor.benchmarks.e2e;
+
+import java.util.Random;
+
+/**
+ * How the stand-in servers misbehave: latency before every response, limited bandwidth and failures of downloads.
+ */
+public class Faults {
+    public enum Failure {
+        /**
+         * Answer 500 Internal Server Error
+         */
+        ERROR,
+        /**
+         * Drop the connection halfway through the body
+         */
+        DROP,
+        /**
+         * Send the whole body with a byte changed, caught by digest checks
+         */
+        CORRUPT
+    }
+
+    /**
+     * Milliseconds before every response
+     */
+    final long latencyMillis;
+    /**
+     * Bytes per second of every download, 0 for unlimited
+     */
+    final long bandwidth;
+    /**
+     * Share of downloads that fail, from 0 to 1
+     */
+    final double failureRate;
+    final Failure failure;
+    private final Random random;
+
+    public Faults(long latencyMillis, long bandwidth, double failureRate, Failure failure, long seed) {
+        this.latencyMillis = latencyMillis;
+        this.bandwidth = bandwidth;
+        this.failureRate = failureRate;
+        this.failure = failure;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @return how the next download fails, or null if it does not
+     */
+    synchronized Failure next() {
+        return this.failureRate > 0 && this.random.nextDouble() < this.failureRate ? this.failure : null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("latency=%dms bandwidth=%s failures=%s", this.latencyMillis,
+                this.bandwidth == 0 ? "unlimited" : (this.bandwidth / 1024) + "KB/s",
+                this.failureRate == 0 ? "none" : (this.failureRate * 100 + "% " + this.failure.name().toLowerCase()));
+    }
+}
@@ -0,0 +1,50 @@
+package tk.jasoryeh.conductor.benchmarks.e2e;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves the files of `http` definitions under `/files/`, and templates included by other templates under
+ * `/templates/`. Faults only apply to files.
+ */
+public class FileServer extends StandInServer {
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> templates = new ConcurrentHashMap<>();
+
+    public FileServer(Faults faults) throws IOException {
+        super(faults);
+    }
+
+    /**
+     * Serve a file
+     * @return its URL
+     */
+    public String file(String name, byte[] content) {
+        this.files.put(name, content);
+        return this.url() + "/files/" + name;
+    }
+
+    /**
+     * Serve a template
+     * @return its URL
+     */
+    public String template(String name, String json) {
+        this.templates.put(name, json.getBytes(StandardCharsets.UTF_8));
+        return this.url() + "/templates/" + name;
+    }
+
+    @Override
+    protected void respond(HttpExchange exchange, String path) throws IOException, InterruptedException {
+        if (path.startsWith("/files/") && this.files.containsKey(path.substring(7))) {
+            this.sendContent(exchange, this.files.get(path.substring(7)));
+        } else if (path.startsWith("/templates/") && this.templates.containsKey(path.substring(11))) {
+            this.send(exchange, 200, "application/json", this.templates.get(path.substring(11)));
+        } else {
+            this.sendNotFound(exchange);
+        }
+    }
+}
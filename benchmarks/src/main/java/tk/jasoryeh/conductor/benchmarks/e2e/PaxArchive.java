@@ -0,0 +1,79 @@
+package tk.jasoryeh.conductor.benchmarks.e2e;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes tar archives the way GNU tar `--format=posix` and Python's tarfile do: every entry is preceded by a pax
+ * header carrying its path in UTF-8, its ustar header only has an ASCII stand-in.
+ */
+class PaxArchive {
+    private static final int BLOCK = 512;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    PaxArchive add(String path, byte[] content) {
+        String ascii = path.replaceAll("[^\\x20-\\x7e]", "_");
+        // more records follow the path, like the times GNU tar records
+        byte[] pathRecord = record("path", path);
+        byte[] mtime = record("mtime", "0");
+        byte[] records = Arrays.copyOf(pathRecord, pathRecord.length + mtime.length);
+        System.arraycopy(mtime, 0, records, pathRecord.length, mtime.length);
+        this.header("PaxHeaders/" + ascii, 'x', records.length);
+        this.write(records);
+        this.header(ascii, '0', content.length);
+        this.write(content);
+        return this;
+    }
+
+    byte[] toByteArray() {
+        // two zero blocks end the archive
+        this.out.write(new byte[2 * BLOCK], 0, 2 * BLOCK);
+        return this.out.toByteArray();
+    }
+
+    /**
+     * "<length> <key>=<value>\n", the length counts the bytes of the whole record including itself
+     */
+    private static byte[] record(String key, String value) {
+        int body = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+        int length = body + String.valueOf(body).length();
+        if (String.valueOf(length).length() != String.valueOf(body).length()) {
+            length++;
+        }
+        return (length + " " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void header(String name, char type, long size) {
+        byte[] header = new byte[BLOCK];
+        put(header, 0, 100, name.length() > 99 ? name.substring(0, 99) : name);
+        put(header, 100, 8, "0000644");
+        put(header, 108, 8, "0000000");
+        put(header, 116, 8, "0000000");
+        put(header, 124, 12, String.format("%011o", size));
+        put(header, 136, 12, String.format("%011o", 0));
+        header[156] = (byte) type;
+        put(header, 257, 6, "ustar");
+        put(header, 263, 2, "00");
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        put(header, 148, 6, String.format("%06o", sum));
+        header[154] = 0;
+        this.out.write(header, 0, BLOCK);
+    }
+
+    private void write(byte[] content) {
+        this.out.write(content, 0, content.length);
+        int padding = (BLOCK - content.length % BLOCK) % BLOCK;
+        this.out.write(new byte[padding], 0, padding);
+    }
+
+    private static void put(byte[] header, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+    }
+}
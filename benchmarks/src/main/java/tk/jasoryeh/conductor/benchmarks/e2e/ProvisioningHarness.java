@@ -0,0 +1,195 @@
+package tk.jasoryeh.conductor.benchmarks.e2e;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provisions a synthetic server from local stand-ins of a file server and Jenkins, timing every phase of the boot
+ * from loading the template to applying it. Every boot runs in a fresh JVM and an empty directory.
+ *
+ * Run with `java -cp target/benchmarks.jar tk.jasoryeh.conductor.benchmarks.e2e.ProvisioningHarness --files=1000`,
+ * see {@link #DEFAULTS} for the options.
+ */
+public class ProvisioningHarness {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("files", "1000");
+        DEFAULTS.put("folders", "50");
+        DEFAULTS.put("downloads", "100");
+        DEFAULTS.put("include-depth", "3");
+        // kilobytes per download
+        DEFAULTS.put("size", "256");
+        // share of the downloads from Jenkins, the rest comes from the file server
+        DEFAULTS.put("jenkins-share", "0.5");
+        DEFAULTS.put("pool", "4");
+        // forkjoin, or virtual on Java 21 and newer, with at most virtual-limit prepare tasks at once
+        DEFAULTS.put("backend", "forkjoin");
+        DEFAULTS.put("virtual-limit", "64");
+        DEFAULTS.put("runs", "5");
+        DEFAULTS.put("warmup", "1");
+        // milliseconds before every response
+        DEFAULTS.put("latency", "0");
+        // kilobytes per second of every download, 0 for unlimited
+        DEFAULTS.put("bandwidth", "0");
+        DEFAULTS.put("failure-rate", "0");
+        DEFAULTS.put("failure", "error");
+        DEFAULTS.put("seed", "1");
+        // keep the directories of the boots, to look at what was provisioned
+        DEFAULTS.put("keep", "false");
+        // write the trace of every boot into its directory, which is kept
+        DEFAULTS.put("trace", "false");
+    }
+
+    private static final String[] PHASES = {
+            "loadTemplate", "buildModel", "parse", "diff", "prepare", "delete", "apply", "total"
+    };
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (!DEFAULTS.containsKey(option[0]) || option.length != 2) {
+                System.err.println("Unknown option " + arg + ", options and their defaults: " + DEFAULTS);
+                System.exit(2);
+            }
+            options.put(option[0], option[1]);
+        }
+
+        Faults faults = new Faults(
+                Long.parseLong(options.get("latency")),
+                Long.parseLong(options.get("bandwidth")) * 1024,
+                Double.parseDouble(options.get("failure-rate")),
+                Faults.Failure.valueOf(options.get("failure").toUpperCase()),
+                Long.parseLong(options.get("seed")));
+        Scenario scenario = new Scenario(
+                Integer.parseInt(options.get("files")),
+                Integer.parseInt(options.get("folders")),
+                Integer.parseInt(options.get("downloads")),
+                Integer.parseInt(options.get("include-depth")),
+                Integer.parseInt(options.get("size")) * 1024,
+                Double.parseDouble(options.get("jenkins-share")),
+                Integer.parseInt(options.get("pool")),
+                options.get("backend"),
+                Integer.parseInt(options.get("virtual-limit")),
+                Boolean.parseBoolean(options.get("trace")));
+        int warmup = Integer.parseInt(options.get("warmup"));
+        int runs = Integer.parseInt(options.get("runs"));
+        boolean keep = Boolean.parseBoolean(options.get("keep")) || scenario.trace;
+
+        System.out.println("Scenario: " + scenario);
+        System.out.println("Faults: " + faults);
+
+        Map<String, List<Double>> timings = new LinkedHashMap<>();
+        for (String phase : PHASES) {
+            timings.put(phase, new ArrayList<>());
+        }
+        int failed = 0;
+        try (FileServer fileServer = new FileServer(faults); FakeJenkins jenkins = new FakeJenkins(faults)) {
+            scenario.generate(fileServer, jenkins);
+            for (int run = 0; run < warmup + runs; run++) {
+                boolean measured = run >= warmup;
+                File directory = Files.createTempDirectory("conductor-e2e").toFile();
+                // failed boots are kept to look into
+                boolean delete = !keep;
+                try {
+                    scenario.write(directory);
+                    JsonObject result = boot(directory);
+                    String label = (measured ? "Run " + (run - warmup + 1) : "Warmup " + (run + 1));
+                    if (result.has("error")) {
+                        failed += measured ? 1 : 0;
+                        System.out.println(label + " failed: " + result.get("error").getAsString()
+                                + " (in " + directory + ")");
+                        delete = false;
+                        continue;
+                    }
+                    JsonObject phases = result.getAsJsonObject("phases");
+                    System.out.printf("%s: %.0f ms%s%n", label, phases.get("total").getAsDouble(),
+                            scenario.trace ? " (trace in " + new File(directory, "launcher_trace.json") + ")" : "");
+                    if (measured) {
+                        for (String phase : PHASES) {
+                            timings.get(phase).add(phases.get(phase).getAsDouble());
+                        }
+                    }
+                } finally {
+                    if (delete) {
+                        FileUtils.deleteQuietly(directory);
+                    }
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%-14s %10s %10s %10s%n", "phase (ms)", "min", "median", "max");
+        for (Map.Entry<String, List<Double>> phase : timings.entrySet()) {
+            List<Double> values = phase.getValue();
+            if (values.isEmpty()) {
+                continue;
+            }
+            Collections.sort(values);
+            System.out.printf("%-14s %10.1f %10.1f %10.1f%n", phase.getKey(),
+                    values.get(0), values.get(values.size() / 2), values.get(values.size() - 1));
+        }
+        System.out.println((runs - failed) + " of " + runs + " runs succeeded");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Boot conductor in a directory, in its own JVM with the class path of this one
+     * @return what {@link ProvisioningRun} printed
+     */
+    private static JsonObject boot(File directory) throws Exception {
+        String java = new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath();
+        // the boot runs in another directory
+        List<String> classPath = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            classPath.add(new File(entry).getAbsolutePath());
+        }
+        ProcessBuilder builder = new ProcessBuilder(Arrays.asList(java, "-cp", String.join(File.pathSeparator, classPath),
+                ProvisioningRun.class.getName()))
+                .directory(directory)
+                .redirectErrorStream(true);
+        // file names are UTF-8 like on servers, not whatever the locale of this shell makes of them
+        builder.environment().put("LC_ALL", "C.UTF-8");
+        Process process = builder.start();
+
+        JsonObject result = null;
+        List<String> output = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(ProvisioningRun.MARKER)) {
+                    result = new JsonParser().parse(line.substring(ProvisioningRun.MARKER.length())).getAsJsonObject();
+                } else {
+                    output.add(line);
+                }
+            }
+        }
+        process.waitFor();
+        if (result == null) {
+            result = new JsonObject();
+            result.addProperty("error", "exited with " + process.exitValue() + " without timings");
+        }
+        if (result.has("error")) {
+            // what it logged last, the trace of the failure if there is one
+            List<String> tail = output.subList(Math.max(0, output.size() - 20), output.size());
+            result.addProperty("error", result.get("error").getAsString() + "\n  " + String.join("\n  ", tail));
+        }
+        return result;
+    }
+}
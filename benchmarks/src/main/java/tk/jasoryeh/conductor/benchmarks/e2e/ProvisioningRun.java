@@ -0,0 +1,66 @@
+package tk.jasoryeh.conductor.benchmarks.e2e;
+
+import com.google.gson.JsonObject;
+import tk.jasoryeh.conductor.Conductor;
+import tk.jasoryeh.conductor.log.Logger;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One boot of conductor in the working directory, timing each phase of {@link Conductor#onEnable()}. Started in its
+ * own JVM by {@link ProvisioningHarness}, the configuration, pools and HTTP client are process-wide singletons.
+ *
+ * Prints a single line starting with {@link #MARKER}, followed by the milliseconds of each phase as JSON.
+ */
+public class ProvisioningRun {
+    static final String MARKER = "conductor-phases ";
+
+    public static void main(String[] args) {
+        Conductor conductor = new Conductor();
+        Conductor.setInstance(conductor);
+
+        Map<String, Runnable> phases = new LinkedHashMap<>();
+        phases.put("loadTemplate", conductor::loadTemplate);
+        phases.put("buildModel", conductor::buildModel);
+        phases.put("parse", conductor::parse);
+        phases.put("diff", conductor::diff);
+        phases.put("prepare", conductor::prepare);
+        phases.put("delete", conductor::delete);
+        phases.put("apply", conductor::apply);
+
+        JsonObject result = new JsonObject();
+        JsonObject timings = new JsonObject();
+        Throwable failure = null;
+        long start = System.nanoTime();
+        try {
+            for (Map.Entry<String, Runnable> phase : phases.entrySet()) {
+                long phaseStart = System.nanoTime();
+                phase.getValue().run();
+                timings.addProperty(phase.getKey(), (System.nanoTime() - phaseStart) / 1e6);
+            }
+            String wrong = Scenario.verify(new File(System.getProperty("user.dir")));
+            if (wrong != null) {
+                throw new IllegalStateException("Provisioned wrongly: " + wrong);
+            }
+            timings.addProperty("total", (System.nanoTime() - start) / 1e6);
+        } catch (Throwable e) {
+            failure = e;
+            Logger.flush();
+            e.printStackTrace();
+            result.addProperty("error", e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+        result.add("phases", timings);
+        conductor.report(failure);
+
+        try {
+            conductor.onDisable();
+        } catch (Exception e) {
+            // pools that were never created
+        }
+        Logger.flush();
+        System.out.println(MARKER + result);
+        System.exit(result.has("error") ? 1 : 0);
+    }
+}
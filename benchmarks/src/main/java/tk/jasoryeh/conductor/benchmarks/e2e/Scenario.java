@@ -0,0 +1,239 @@
+package tk.jasoryeh.conductor.benchmarks.e2e;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A synthetic server template: files spread over nested folders and over a chain of includes, some of them
+ * downloaded from the stand-in file server or Jenkins.
+ */
+public class Scenario {
+    /**
+     * Folders per folder, folders 0 to 3 are in the root, 4 to 7 in folder 0...
+     */
+    private static final int FOLDER_FANOUT = 4;
+    private static final int JOBS = 4;
+    /**
+     * Folder of the root template extracting a pax archive whose paths are not ASCII
+     */
+    private static final String ARCHIVE_FOLDER = "archive";
+    private static final String[] ARCHIVE_ENTRIES = {
+            "données/été.properties",
+            "日本語/設定ファイル.yml",
+            "emoji/\uD83D\uDE80-" + String.join("", Collections.nCopies(40, "ü")) + ".txt",
+    };
+
+    final int files;
+    final int folders;
+    final int downloads;
+    final int includeDepth;
+    final int downloadSize;
+    final double jenkinsShare;
+    final int pool;
+    final String backend;
+    final int virtualLimit;
+    final boolean trace;
+
+    private String rootTemplate;
+    private String jenkinsHost;
+
+    public Scenario(int files, int folders, int downloads, int includeDepth, int downloadSize,
+                    double jenkinsShare, int pool, String backend, int virtualLimit, boolean trace) {
+        this.files = files;
+        this.folders = folders;
+        this.downloads = Math.min(downloads, files);
+        this.includeDepth = includeDepth;
+        this.downloadSize = downloadSize;
+        this.jenkinsShare = jenkinsShare;
+        this.pool = pool;
+        this.backend = backend;
+        this.virtualLimit = virtualLimit;
+        this.trace = trace;
+    }
+
+    /**
+     * Generate the templates, serving the includes and downloads from the stand-ins
+     */
+    public void generate(FileServer fileServer, FakeJenkins jenkins) {
+        this.jenkinsHost = jenkins.url();
+        int templates = this.includeDepth + 1;
+        JsonObject[] filesystems = new JsonObject[templates];
+        JsonObject[][] folderContents = new JsonObject[templates][];
+        for (int t = 0; t < templates; t++) {
+            filesystems[t] = new JsonObject();
+            folderContents[t] = this.folders(filesystems[t]);
+        }
+
+        int jenkinsDownloads = (int) Math.round(this.downloads * this.jenkinsShare);
+        for (int i = 0; i < this.files; i++) {
+            int template = i % templates;
+            // spread over the folders and the root
+            int folder = i % (this.folders + 1);
+            JsonObject parent = folder == this.folders ? filesystems[template] : folderContents[template][folder];
+            JsonObject file = new JsonObject();
+            file.addProperty("type", "file");
+            if (i < jenkinsDownloads) {
+                String job = "job" + (i % JOBS);
+                String artifact = "artifact" + i + ".jar";
+                jenkins.artifact(job, artifact, StandInServer.content(artifact, this.downloadSize));
+                JsonObject content = new JsonObject();
+                content.addProperty("plugins", "jenkins");
+                content.addProperty("jenkins_host", jenkins.url());
+                content.addProperty("jenkins_job", job);
+                content.addProperty("jenkins_build", FakeJenkins.BUILD);
+                content.addProperty("jenkins_artifact", artifact);
+                file.add("content", content);
+                parent.add("t" + template + "-" + artifact, file);
+            } else if (i < this.downloads) {
+                String name = "download" + i + ".bin";
+                byte[] bytes = StandInServer.content(name, this.downloadSize);
+                JsonObject content = new JsonObject();
+                content.addProperty("plugins", "http");
+                content.addProperty("http", fileServer.file(name, bytes));
+                content.addProperty("sha256", sha256(bytes));
+                file.add("content", content);
+                parent.add("t" + template + "-" + name, file);
+            } else {
+                JsonArray lines = new JsonArray();
+                lines.add("key" + i + "={{variable" + (i % 10) + "}}");
+                lines.add("template=" + template);
+                file.add("content", lines);
+                parent.add("t" + template + "-file" + i + "-{{variable" + (i % 10) + "}}.properties", file);
+            }
+        }
+
+        PaxArchive archive = new PaxArchive();
+        for (String entry : ARCHIVE_ENTRIES) {
+            archive.add(entry, entry.getBytes(StandardCharsets.UTF_8));
+        }
+        JsonArray plugins = new JsonArray();
+        plugins.add("http");
+        plugins.add("tar");
+        JsonObject archiveContent = new JsonObject();
+        archiveContent.add("plugins", plugins);
+        archiveContent.addProperty("http", fileServer.file("archive.tar", archive.toByteArray()));
+        JsonObject archiveFolder = new JsonObject();
+        archiveFolder.addProperty("type", "folder");
+        archiveFolder.add("content", archiveContent);
+        filesystems[0].add(ARCHIVE_FOLDER, archiveFolder);
+
+        // served from the end of the chain, every include knows the URL of the next one
+        String next = null;
+        for (int t = templates - 1; t >= 0; t--) {
+            String json = template(t == 0 ? "root" : "include" + t, filesystems[t], next);
+            if (t == 0) {
+                this.rootTemplate = json;
+            } else {
+                next = fileServer.template("include" + t + ".json", json);
+            }
+        }
+    }
+
+    /**
+     * Create the folders in a filesystem definition
+     * @return the content of every folder, by index
+     */
+    private JsonObject[] folders(JsonObject filesystem) {
+        JsonObject[] contents = new JsonObject[this.folders];
+        for (int i = 0; i < this.folders; i++) {
+            int parent = i / FOLDER_FANOUT - 1;
+            JsonObject folder = new JsonObject();
+            folder.addProperty("type", "folder");
+            contents[i] = new JsonObject();
+            folder.add("content", contents[i]);
+            (parent < 0 ? filesystem : contents[parent]).add("folder" + i, folder);
+        }
+        return contents;
+    }
+
+    private static String template(String name, JsonObject filesystem, String include) {
+        JsonObject metadata = new JsonObject();
+        metadata.addProperty("version", "1");
+        metadata.addProperty("name", name);
+        JsonObject variables = new JsonObject();
+        for (int i = 0; i < 10; i++) {
+            variables.addProperty("variable" + i, name + "-value-" + i);
+        }
+        metadata.add("variables", variables);
+        if (include != null) {
+            JsonArray includes = new JsonArray();
+            includes.add(include);
+            metadata.add("includes", includes);
+        }
+
+        JsonObject root = new JsonObject();
+        root.add("_conductor", metadata);
+        root.add("filesystem", filesystem);
+        return new GsonBuilder().create().toJson(root);
+    }
+
+    /**
+     * Write the launcher configuration and the root template of a boot into a directory
+     */
+    public void write(File directory) throws IOException {
+        String properties = String.join("\n",
+                "name=provisioning-harness",
+                "config=server_cnf.json",
+                "config.source=filesystem",
+                "update=false",
+                "log.level=warn",
+                "log.format=plain",
+                "pool=" + this.pool,
+                "pool.backend=" + this.backend,
+                "pool.virtual.limit=" + this.virtualLimit,
+                "cache=false",
+                "incremental=false",
+                "metrics=true",
+                "trace=" + this.trace,
+                "jenkins.host=" + this.jenkinsHost,
+                "");
+        Files.write(new File(directory, "serverlauncher.properties").toPath(), properties.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(directory, "server_cnf.json").toPath(), this.rootTemplate.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Check what a boot provisioned in a directory, beyond it not failing
+     * @return what is wrong, or null
+     */
+    public static String verify(File directory) throws IOException {
+        for (String entry : ARCHIVE_ENTRIES) {
+            File file = new File(new File(directory, ARCHIVE_FOLDER), entry);
+            if (!file.isFile()) {
+                return "the archive entry " + entry + " was not extracted";
+            }
+            if (!Arrays.equals(Files.readAllBytes(file.toPath()), entry.getBytes(StandardCharsets.UTF_8))) {
+                return "the archive entry " + entry + " was extracted with other contents";
+            }
+        }
+        return null;
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("files=%d folders=%d downloads=%d (%.0f%% jenkins, %dKB each) include-depth=%d pool=%d backend=%s",
+                this.files, this.folders, this.downloads, this.jenkinsShare * 100, this.downloadSize / 1024,
+                this.includeDepth, this.pool, this.backend);
+    }
+}
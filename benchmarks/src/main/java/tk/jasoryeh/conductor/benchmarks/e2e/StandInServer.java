@@ -0,0 +1,133 @@
+package tk.jasoryeh.conductor.benchmarks.e2e;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local HTTP server standing in for a service conductor downloads from, on a free port of the loopback interface.
+ */
+public abstract class StandInServer implements Closeable {
+    private static final int CHUNK = 16 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    protected final Faults faults;
+
+    protected StandInServer(Faults faults) throws IOException {
+        this.faults = faults;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, this.getClass().getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * @return base URL of the server, without a trailing slash
+     */
+    public String url() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * Answer a request
+     * @param path decoded path of the request, without the query
+     */
+    protected abstract void respond(HttpExchange exchange, String path) throws IOException, InterruptedException;
+
+    /**
+     * @throws IOException when the client went away, or the connection is dropped on purpose. The server closes the
+     * connection of exchanges that fail with it.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (this.faults.latencyMillis > 0) {
+                Thread.sleep(this.faults.latencyMillis);
+            }
+            this.respond(exchange, exchange.getRequestURI().getPath());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    protected void sendJson(HttpExchange exchange, String json) throws IOException {
+        this.send(exchange, 200, "application/json", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected void sendNotFound(HttpExchange exchange) throws IOException {
+        this.send(exchange, 404, "application/json", "{}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected void send(HttpExchange exchange, int code, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Send a download, slowed down to the bandwidth and failing as often as the faults say
+     */
+    protected void sendContent(HttpExchange exchange, byte[] content) throws IOException, InterruptedException {
+        Faults.Failure failure = this.faults.next();
+        if (failure == Faults.Failure.ERROR) {
+            this.send(exchange, 500, "text/plain", "Injected failure".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        if (failure == Faults.Failure.CORRUPT && content.length > 0) {
+            content = content.clone();
+            content[content.length / 2] ^= 0x01;
+        }
+        int length = failure == Faults.Failure.DROP ? content.length / 2 : content.length;
+
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.sendResponseHeaders(200, content.length);
+        OutputStream out = exchange.getResponseBody();
+        long start = System.nanoTime();
+        for (int written = 0; written < length; ) {
+            int chunk = Math.min(CHUNK, length - written);
+            out.write(content, written, chunk);
+            written += chunk;
+            if (this.faults.bandwidth > 0) {
+                long due = start + written * 1_000_000_000L / this.faults.bandwidth;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                }
+            }
+        }
+        // a body shorter than announced fails to close, which drops the connection
+        out.close();
+    }
+
+    /**
+     * The same bytes for the same name on every run
+     */
+    static byte[] content(String name, int size) {
+        byte[] content = new byte[size];
+        new Random(name.hashCode()).nextBytes(content);
+        return content;
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+}
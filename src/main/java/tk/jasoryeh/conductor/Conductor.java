@@ -3,9 +3,13 @@ package tk.jasoryeh.conductor;
 import com.google.gson.JsonObject;
 import lombok.Getter;
 import lombok.Setter;
-import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.cache.ArtifactCache;
 import tk.jasoryeh.conductor.config.LauncherConfiguration;
+import tk.jasoryeh.conductor.downloaders.DownloadScheduler;
 import tk.jasoryeh.conductor.log.Logger;
+import tk.jasoryeh.conductor.metrics.RunMetrics;
+import tk.jasoryeh.conductor.scheduler.PrepareExecutor;
+import tk.jasoryeh.conductor.state.ApplyState;
 import tk.jasoryeh.conductor.util.TerminalColors;
 import tk.jasoryeh.conductor.util.Utility;
 
@@ -24,19 +28,28 @@ public class Conductor extends Boot {
     @Setter
     private static Conductor instance;
 
+    /**
+     * Runs the prepare tasks, see `pool.backend`
+     */
+    @Getter
+    protected PrepareExecutor prepareExecutor;
     @Getter
-    protected ForkJoinPool threadPool;
+    protected ForkJoinPool applyPool;
     @Getter
     private LauncherConfiguration launcherConfig;
     @Getter
     private V2Template templateConfig;
 
     private List<V2FileSystemObject> layout = new ArrayList<>();
+    /**
+     * State of the last run when applying incrementally, else null
+     */
+    private ApplyState state;
 
     /**
-     * With the creation of this, we auto call onEnable and start the process
+     * Nothing happens until {@link #onEnable()}, or its phases are called one after the other
      */
-    Conductor() {
+    public Conductor() {
         this.logger.debug("<< --- < " + TerminalColors.GREEN_BOLD.wrap("Conductor") + " > --- >>");
         String argumentFull = String.join(" ", Utility.getJVMArguments());
         this.logger.debug("Arguments - " + (argumentFull.length() == 0 ? "(empty)" : argumentFull));
@@ -47,46 +60,140 @@ public class Conductor extends Boot {
         this.logger.debug("Temporary storage in - " + new File(Utility.getCurrentDirectory(), V2Template.TEMPORARY_DIR).getAbsolutePath());
     }
 
-    @SneakyThrows
+    /**
+     * Read the launcher configuration and the template with its includes, and create the pools
+     */
+    public void loadTemplate() {
+        long start = System.nanoTime();
+        this.launcherConfig = LauncherConfiguration.get();
+        RunMetrics.get().start(this);
+        JsonObject rawTemplate = Objects.requireNonNull(this.launcherConfig.parseConfig());
+        this.templateConfig = new V2Template(this, rawTemplate);
+        this.prepareExecutor = PrepareExecutor.create(this.launcherConfig);
+        this.applyPool = new ForkJoinPool(this.launcherConfig.getApplyPoolSize());
+        RunMetrics.get().phase("loadTemplate", start);
+    }
+
+    /**
+     * Merge the includes into the filesystem definition and create its root objects
+     */
+    public void buildModel() {
+        long start = System.nanoTime();
+        this.layout = this.templateConfig.buildFilesystemModel();
+        this.logger.info("Found " + this.layout.size() + " root object definitions.");
+        RunMetrics.get().phase("buildModel", start);
+    }
+
+    /**
+     * Parse the plugins and children of every object
+     */
+    public void parse() {
+        long start = System.nanoTime();
+        this.logger.info("Parsing object definitions...");
+        this.layout.forEach(V2FileSystemObject::parse);
+        RunMetrics.get().phase("parse", start);
+        this.logger.info("Tree:");
+        this.displayTree(this.layout);
+    }
+
     public void execute() {
-        this.logger.info("Preparing resources....");
-        this.layout.forEach(obj -> this.threadPool.execute(obj::prepare));
-        while (!this.threadPool.awaitQuiescence(5, TimeUnit.SECONDS)) {
-            this.logger.info("Waiting for finishing of tasks: "
-                    + this.threadPool.getQueuedTaskCount() + " in line "
-                    + this.threadPool.getActiveThreadCount() + " active threads");
+        this.diff();
+        this.prepare();
+        this.delete();
+        this.apply();
+    }
+
+    /**
+     * When applying incrementally, find the objects that did not change since the last run
+     */
+    public void diff() {
+        if (!this.launcherConfig.isIncremental()) {
+            return;
+        }
+        long start = System.nanoTime();
+        this.state = new ApplyState(this.launcherConfig.getIncrementalState());
+        this.logger.info("Comparing object definitions against the last run...");
+        for (V2FileSystemObject obj : this.layout) {
+            obj.diff(this.state);
         }
-        //this.layout.forEach(V2FileSystemObject::prepare);
+        this.logger.info(this.countUnchanged(this.layout) + " objects are unchanged and will be skipped.");
+        RunMetrics.get().phase("diff", start);
+    }
+
+    /**
+     * Prepare every object in the temporary directory, downloading what it needs
+     */
+    public void prepare() {
+        long start = System.nanoTime();
+        this.logger.info("Preparing resources....");
+        List<Runnable> preparing = new ArrayList<>();
+        this.layout.forEach(obj -> preparing.add(obj::prepare));
+        this.prepareExecutor.invokeAll(preparing);
+        ArtifactCache.get().flush();
+        RunMetrics.get().phase("prepare", start);
+        DownloadScheduler.get().summary();
+    }
 
+    /**
+     * Delete what the objects replace from the work directory
+     */
+    public void delete() {
+        long start = System.nanoTime();
         this.logger.info("Cleaning up work directory...");
         this.layout.forEach(V2FileSystemObject::delete);
+        RunMetrics.get().phase("delete", start);
+    }
 
+    /**
+     * Move the prepared objects into the work directory, and save the state of this run when applying incrementally
+     */
+    public void apply() {
+        long start = System.nanoTime();
         this.logger.info("Applying changes to work directory...");
-        this.layout.forEach(V2FileSystemObject::apply);
+        this.applyPool.invoke(ForkJoinTask.adapt(() -> V2FileSystemObject.applyAll(this.layout)));
+        ArtifactCache.get().flush();
 
+        if (this.state != null) {
+            this.state.save();
+        }
+        RunMetrics.get().phase("apply", start);
         this.logger.info("Changes applied!");
     }
 
+    /**
+     * Write the metrics of this run, when enabled
+     * @param failure what failed the run, or null if it succeeded
+     */
+    public void report(Throwable failure) {
+        RunMetrics.get().finish(this, this.layout, failure);
+    }
+
+    private int countUnchanged(List<V2FileSystemObject> fsList) {
+        int count = 0;
+        for (V2FileSystemObject v2FileSystemObject : fsList) {
+            if (v2FileSystemObject.isUnchanged()) {
+                count++;
+            }
+            if (v2FileSystemObject instanceof V2FolderObject) {
+                count += this.countUnchanged(((V2FolderObject) v2FileSystemObject).children);
+            }
+        }
+        return count;
+    }
+
     @Override
     public void onEnable() {
-        this.launcherConfig = LauncherConfiguration.get();
-        JsonObject rawTemplate = Objects.requireNonNull(this.launcherConfig.parseConfig());
-        this.templateConfig = new V2Template(this, rawTemplate);
-        this.threadPool = new ForkJoinPool(this.launcherConfig.getPoolSize());
-
-        this.layout = this.templateConfig.buildFilesystemModel();
-        this.logger.info("Found " + this.layout.size() + " root object definitions.");
-        this.logger.info("Parsing object definitions...");
-        this.layout.forEach(V2FileSystemObject::parse);
-        this.logger.info("Tree:");
-        this.displayTree(this.layout);
+        this.loadTemplate();
+        this.buildModel();
+        this.parse();
         this.logger.info("Executing...");
         this.execute();
     }
 
     public void onDisable() {
         this.logger.info("Shutting down thread pool...");
-        this.threadPool.shutdown();
+        this.prepareExecutor.shutdown();
+        this.applyPool.shutdown();
         this.logger.info("Thread pool shut down.");
         this.logger.info("Conductor shut down.");
     }
@@ -151,10 +258,14 @@ public class Conductor extends Boot {
         try {
             conductor.onEnable();
         } catch(Exception e) {
+            conductor.report(e);
+            // keep the trace after the messages logged before it
+            Logger.flush();
             e.printStackTrace();
             qsLog.error("Failed to boot conductor successfully. Details: " + e.getMessage());
             return;
         }
+        conductor.report(null);
 
         // Finish, clean up
         qsLog.info("Disabling Conductor...");
@@ -80,6 +80,8 @@ public class ConductorUpdater {
                         data,
                         new HashMap<>()
                 );
+                // revalidated against the cached copy, so unchanged builds are not downloaded again
+                conductorDownloader.setCacheable(true);
                 break;
             default:
                 log("Could not update. Unsupported update source!");
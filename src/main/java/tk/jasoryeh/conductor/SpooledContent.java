@@ -0,0 +1,106 @@
+package tk.jasoryeh.conductor;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.util.Assert;
+import tk.jasoryeh.conductor.util.Digests;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+
+/**
+ * Inline file content kept on disk instead of in the template, see {@link tk.jasoryeh.conductor.config.StreamingTemplateParser}.
+ *
+ * In the template, the content is replaced by a small object referencing the spooled text. Variables in the text are
+ * resolved while it is copied to its destination, a few lines at a time.
+ */
+public class SpooledContent {
+    public static final String KEY = "_spooled";
+    public static final String SPOOL_DIR = ".conductor-spool";
+    private static final int CHUNK = 64 * 1024;
+
+    /**
+     * Reference to spooled text, to be put in the template in place of the content
+     * @param file file holding the text, as it would be written without variables resolved
+     * @param sha256 hash of the text
+     * @return reference
+     */
+    public static JsonObject reference(File file, String sha256) {
+        JsonObject reference = new JsonObject();
+        reference.addProperty(KEY, file.getAbsolutePath());
+        reference.addProperty("sha256", sha256);
+        reference.addProperty("length", file.length());
+        return reference;
+    }
+
+    public static boolean isSpooled(JsonElement content) {
+        return content.isJsonObject() && content.getAsJsonObject().has(KEY);
+    }
+
+    public static SpooledContent of(JsonElement content) {
+        Assert.isTrue(isSpooled(content), "Content is not spooled");
+        return new SpooledContent(new File(content.getAsJsonObject().get(KEY).getAsString()));
+    }
+
+    @Getter
+    private final File file;
+
+    private SpooledContent(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Write the text with its variables resolved
+     * @param template template resolving the variables
+     * @param destination file written
+     */
+    @SneakyThrows
+    public void writeResolved(V2Template template, File destination) {
+        File parent = destination.getAbsoluteFile().getParentFile();
+        Assert.isTrue(parent.exists() || parent.mkdirs(), "mkdirs - spooled content");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(destination.toPath()), StandardCharsets.UTF_8))) {
+            this.resolve(template, out::write);
+        }
+    }
+
+    /**
+     * Hash of the text with its variables resolved
+     * @param template template resolving the variables
+     * @return hex SHA-256
+     */
+    @SneakyThrows
+    public String resolvedHash(V2Template template) {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        this.resolve(template, chunk -> digest.update(chunk.getBytes(StandardCharsets.UTF_8)));
+        return Digests.hex(digest.digest());
+    }
+
+    private void resolve(V2Template template, ChunkConsumer consumer) throws IOException {
+        try (Reader in = new InputStreamReader(Files.newInputStream(this.file.toPath()), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[CHUNK];
+            StringBuilder pending = new StringBuilder();
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                pending.append(buffer, 0, read);
+                // variable references never span lines, resolve up to the last complete line
+                int end = pending.lastIndexOf("\n") + 1;
+                if (end > 0) {
+                    consumer.accept(template.resolveVariables(pending.substring(0, end)));
+                    pending.delete(0, end);
+                }
+            }
+            if (pending.length() > 0) {
+                consumer.accept(template.resolveVariables(pending.toString()));
+            }
+        }
+    }
+
+    private interface ChunkConsumer {
+        void accept(String chunk) throws IOException;
+    }
+}
@@ -4,8 +4,9 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import lombok.SneakyThrows;
 import org.apache.commons.io.FileUtils;
+import tk.jasoryeh.conductor.cache.ApplyStrategy;
+import tk.jasoryeh.conductor.cache.ArtifactCache;
 import tk.jasoryeh.conductor.config.InvalidConfigurationException;
-import tk.jasoryeh.conductor.plugins.Plugin;
 import tk.jasoryeh.conductor.util.Assert;
 
 import java.io.File;
@@ -29,7 +30,7 @@ public class V2FileObject extends V2FileSystemObject {
     @Override
     public void parse() {
         JsonElement rawContent = V2FileSystemObject.getContentElement(this.definition);
-        if (rawContent.isJsonObject()) {
+        if (rawContent.isJsonObject() && !SpooledContent.isSpooled(rawContent)) {
             this.plugins.addAll(V2FileObject.parsePlugins(this, rawContent.getAsJsonObject()));
         }
     }
@@ -37,6 +38,10 @@ public class V2FileObject extends V2FileSystemObject {
     @SneakyThrows
     @Override
     public void prepare() {
+        if (this.unchanged) {
+            return;
+        }
+        long start = System.nanoTime();
         JsonElement contentDefinition = getContentElement(this.definition);
         String asString;
         if (contentDefinition.isJsonArray()) {
@@ -48,38 +53,93 @@ public class V2FileObject extends V2FileSystemObject {
             asString = this.getTemplate().resolveVariables(
                     buildTextFile.toString());
             FileUtils.writeStringToFile(this.getTemporary(), asString, StandardCharsets.UTF_8);
+        } else if (SpooledContent.isSpooled(contentDefinition)) {
+            SpooledContent.of(contentDefinition).writeResolved(this.getTemplate(), this.getTemporary());
         } else if (contentDefinition.isJsonPrimitive()) {
             asString = this.getTemplate().resolveVariables(
                     contentDefinition.getAsString());
             FileUtils.writeStringToFile(this.getTemporary(), asString, StandardCharsets.UTF_8);
         }
 
-        for (Plugin plugin : this.plugins) {
-            plugin.prepare();
-        }
+        this.preparePlugins();
 
         if (!this.getTemporary().exists()) {
             throw new InvalidConfigurationException("The configuration specified for " + this.name + " does not create a valid file!");
         }
+        this.metrics.prepared(start);
     }
 
     @Override
     public void delete() {
+        if (this.unchanged) {
+            return;
+        }
+        long start = System.nanoTime();
         File file = this.getFile();
         Assert.isTrue(
                 tk.jasoryeh.conductor.util.FileUtils.delete(file),
                 String.format("Deletion of %s failed!", file.getAbsolutePath()));
+        this.metrics.deleted(start);
     }
 
-    @SneakyThrows
     @Override
     public void apply() {
-        for (Plugin plugin : this.plugins) {
-            plugin.execute();
+        if (this.unchanged) {
+            return;
+        }
+        long start = System.nanoTime();
+        this.executePlugins();
+        this.put();
+        this.metrics.applied(start);
+    }
+
+    /**
+     * Read-only strategies are only inherited by downloaded files, files written from the template are moved unless
+     * they set the strategy themselves: servers rewrite their configurations in place
+     */
+    @Override
+    public ApplyStrategy getApplyStrategy() {
+        ApplyStrategy strategy = super.getApplyStrategy();
+        if (strategy.isReadOnly() && this.plugins.isEmpty() && !this.definition.has("apply")) {
+            return ApplyStrategy.MOVE;
+        }
+        return strategy;
+    }
+
+    /**
+     * Put the prepared file into place
+     */
+    @SneakyThrows
+    private void put() {
+        ApplyStrategy strategy = this.getApplyStrategy();
+        if (strategy.isReadOnly() && this.plugins.isEmpty()) {
+            this.logger.warn(String.format("%s is written from the template but applied as a read-only %s, "
+                    + "the server cannot change it", this.getPath(), strategy.name().toLowerCase()));
+        }
+        if (strategy == ApplyStrategy.COPY) {
+            Files.copy(this.getTemporary().toPath(), this.getFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+            // nothing cleans up launcher_tmp, the prepared file would take disk space once more
+            Files.delete(this.getTemporary().toPath());
+            return;
+        }
+        // a download is not read again to be hashed if nothing changed it since
+        String knownSha256 = this.plugins.isEmpty() ? null : this.plugins.get(this.plugins.size() - 1).getPreparedSha256();
+        if (strategy.isStored()
+                && ArtifactCache.get().apply(this.getTemporary(), this.getFile(), strategy, knownSha256) != null) {
+            return;
         }
         Files.move(
                 this.getTemporary().toPath(),
                 this.getFile().toPath(),
                 StandardCopyOption.REPLACE_EXISTING);
     }
+
+    /**
+     * Switching to another strategy than move applies the file again
+     */
+    @Override
+    protected String describe() {
+        ApplyStrategy strategy = this.getApplyStrategy();
+        return super.describe() + (strategy == ApplyStrategy.MOVE ? "" : "\napply=" + strategy.name().toLowerCase());
+    }
 }
@@ -4,16 +4,23 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import lombok.Getter;
+import tk.jasoryeh.conductor.cache.ApplyStrategy;
 import tk.jasoryeh.conductor.config.InvalidConfigurationException;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
 import tk.jasoryeh.conductor.log.Logger;
+import tk.jasoryeh.conductor.metrics.NodeMetrics;
 import tk.jasoryeh.conductor.plugins.Plugin;
 import tk.jasoryeh.conductor.plugins.PluginFactory;
+import tk.jasoryeh.conductor.state.ApplyState;
 import tk.jasoryeh.conductor.util.Assert;
+import tk.jasoryeh.conductor.util.Digests;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
 
 public abstract class V2FileSystemObject {
     protected final JsonObject definition;
@@ -29,7 +36,17 @@ public abstract class V2FileSystemObject {
     @Getter
     Conductor conductor;
 
+    @Getter
     protected final List<Plugin> plugins = new ArrayList<>();
+    @Getter
+    protected final NodeMetrics metrics = new NodeMetrics();
+
+    /**
+     * Set when applying incrementally and neither the definition nor the file changed since the last run, in which
+     * case this object is not prepared, deleted or applied again.
+     */
+    @Getter
+    protected boolean unchanged = false;
 
     public V2FileSystemObject(V2Template template, V2FileSystemObject parent, String name, JsonObject definition) {
         this.parent = parent;
@@ -62,6 +79,22 @@ public abstract class V2FileSystemObject {
         return new File(this.parent.getTemporary(), this.buildTemporaryName());
     }
 
+    /**
+     * File plugins download to, before other plugins process it
+     * @return the temporary file of this object, unless it is a folder
+     */
+    public File getDownload() {
+        return this.getTemporary();
+    }
+
+    /**
+     * Path of this object relative to the working directory
+     * @return path separated by '/'
+     */
+    public String getPath() {
+        return this.parent == null ? this.name : this.parent.getPath() + "/" + this.name;
+    }
+
     private String buildTemporaryName() {
         V2FileSystemObject parent = this.parent;
         StringBuilder name = new StringBuilder();
@@ -110,6 +143,102 @@ public abstract class V2FileSystemObject {
      */
     public abstract void apply();
 
+    /**
+     * Text describing everything that determines what this object produces, with variables resolved.
+     * @return description
+     */
+    protected String describe() {
+        JsonElement content = getContentElement(this.definition);
+        if (SpooledContent.isSpooled(content)) {
+            return "spooled " + SpooledContent.of(content).resolvedHash(this.template);
+        }
+        return this.template.resolveVariables(content.toString());
+    }
+
+    /**
+     * How the files of this object are put into place: the `apply` of its definition, else the one of its parent,
+     * else `apply.strategy`
+     * @return strategy
+     */
+    public ApplyStrategy getApplyStrategy() {
+        if (this.definition.has("apply")) {
+            return ApplyStrategy.of(this.template.resolveVariables(this.definition.get("apply").getAsString()),
+                    this.getPath());
+        }
+        return this.parent != null ? this.parent.getApplyStrategy() : LauncherConfiguration.get().getApplyStrategy();
+    }
+
+    /**
+     * Hash of the resolved definition of this object
+     * @return hex SHA-256
+     */
+    public String definitionHash() {
+        return Digests.sha256(this.getDefinedType().toLowerCase() + "\n" + this.describe());
+    }
+
+    /**
+     * Whether this object produces the same result every time its definition is the same.
+     * @return false if any plugin retrieves content that may change
+     */
+    public boolean isStable() {
+        return this.plugins.stream().allMatch(Plugin::isStable);
+    }
+
+    /**
+     * Compare this object against the state of the last successful run, see {@link #isUnchanged()}.
+     * @param state applied state of the last run, receives the hash of this run
+     */
+    public void diff(ApplyState state) {
+        String hash = this.definitionHash();
+        state.record(this.getPath(), hash);
+        this.unchanged = hash.equals(state.previousHash(this.getPath()))
+                && this.isStable()
+                && this.getFile().exists();
+    }
+
+    /**
+     * Prepare the plugins of this object one after the other, timing each of them
+     */
+    protected void preparePlugins() {
+        for (Plugin plugin : this.plugins) {
+            long start = System.nanoTime();
+            plugin.prepare();
+            plugin.getMetrics().prepared(start);
+        }
+    }
+
+    /**
+     * Execute the plugins of this object one after the other, timing each of them
+     */
+    protected void executePlugins() {
+        for (Plugin plugin : this.plugins) {
+            long start = System.nanoTime();
+            plugin.execute();
+            plugin.getMetrics().executed(start);
+        }
+    }
+
+    /**
+     * Force this object to be applied again.
+     */
+    protected void markChanged() {
+        this.unchanged = false;
+    }
+
+    /**
+     * Apply objects that do not depend on each other, concurrently when running in a {@link java.util.concurrent.ForkJoinPool}.
+     * @param objects siblings to apply
+     */
+    public static void applyAll(List<V2FileSystemObject> objects) {
+        if (!ForkJoinTask.inForkJoinPool() || objects.size() < 2) {
+            objects.forEach(V2FileSystemObject::apply);
+            return;
+        }
+        ForkJoinTask.invokeAll(objects.stream()
+                .map(obj -> ForkJoinTask.adapt(obj::apply))
+                .collect(Collectors.toList()));
+    }
+
     /**
      * Depth this object is in
      * @return depth
@@ -158,9 +287,14 @@ public abstract class V2FileSystemObject {
         Logger logger = new Logger(template.getLogger(), V2FileSystemObject.class.getSimpleName() + "@buildFilesystemModel");
         logger.debug("Building filesystem model for: " + (fsObject == null ? "(root)" : fsObject.getName()));
         ArrayList<V2FileSystemObject> fsDefinitions = new ArrayList<>();
-        for (String fileName : Objects.requireNonNull(definition).keySet()) {
-            fileName = template.resolveVariables(fileName);
-            JsonObject fileDefinition = assertJsonObject(fileName, definition.get(fileName));
+        for (String key : Objects.requireNonNull(definition).keySet()) {
+            JsonElement element = definition.get(key);
+            if (fsObject != null && !isChildDefinition(element)) {
+                // settings of the folder's plugins
+                continue;
+            }
+            String fileName = template.resolveVariables(key);
+            JsonObject fileDefinition = assertJsonObject(fileName, element);
 
             String definitionType = getType(fileDefinition);
             logger.info("Found " + definitionType + ": " + fileName);
@@ -180,6 +314,13 @@ public abstract class V2FileSystemObject {
         return fsDefinitions;
     }
 
+    /**
+     * Whether an entry of a folder's content defines a child, rather than a setting of the folder
+     */
+    public static boolean isChildDefinition(JsonElement element) {
+        return element.isJsonObject() && element.getAsJsonObject().has("type");
+    }
+
     public static Plugin createPlugin(String type, V2FileSystemObject fsObject, JsonObject contentsDefinition) {
         fsObject.logger.info("Build plugin for " + fsObject.getName() + ": " + type);
         PluginFactory<?, ?> factory = fsObject.getTemplate().getPluginFactoryRepository().getPlugin(type);
@@ -211,6 +352,9 @@ public abstract class V2FileSystemObject {
             // pass, plugin is probably just a folder.
             //throw new InvalidConfigurationException("Plugin list must be an array (list of strings that are plugin names) or a primitive (string of plugin name)");
         }
+        for (int i = 0; i < plugins.size(); i++) {
+            plugins.get(i).follow(i == 0 ? null : plugins.get(i - 1));
+        }
         return plugins;
     }
 
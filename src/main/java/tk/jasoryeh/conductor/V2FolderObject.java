@@ -1,15 +1,16 @@
 package tk.jasoryeh.conductor;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import lombok.SneakyThrows;
-import tk.jasoryeh.conductor.plugins.Plugin;
+import tk.jasoryeh.conductor.state.ApplyState;
 import tk.jasoryeh.conductor.util.Assert;
 import tk.jasoryeh.conductor.util.FileUtils;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.Map;
 
 @V2FileSystemObjectTypeKey("folder")
 public class V2FolderObject extends V2FileSystemObject {
@@ -42,44 +43,94 @@ public class V2FolderObject extends V2FileSystemObject {
         }
     }
 
+    /**
+     * Only the folder's own settings and the names of its children, the children are compared on their own.
+     */
+    @Override
+    protected String describe() {
+        JsonObject contentDefinition = assertJsonObject("content",
+                V2FileSystemObject.getContentElement(this.definition));
+        StringBuilder description = new StringBuilder();
+        for (Map.Entry<String, JsonElement> entry : contentDefinition.entrySet()) {
+            JsonElement value = entry.getValue();
+            boolean isChild = V2FileSystemObject.isChildDefinition(value);
+            description.append(entry.getKey()).append('=')
+                    .append(isChild ? "(child)" : value.toString()).append('\n');
+        }
+        return this.template.resolveVariables(description.toString());
+    }
+
+    /**
+     * Next to the folder, the folder itself is a directory
+     */
+    @Override
+    public File getDownload() {
+        return new File(this.getTemporary().getPath() + ".download");
+    }
+
+    @Override
+    public void diff(ApplyState state) {
+        super.diff(state);
+        for (V2FileSystemObject child : this.children) {
+            child.diff(state);
+        }
+        if (!this.unchanged) {
+            // the whole folder is replaced, so is everything in it
+            this.markChanged();
+        }
+    }
+
+    @Override
+    protected void markChanged() {
+        super.markChanged();
+        for (V2FileSystemObject child : this.children) {
+            child.markChanged();
+        }
+    }
+
     @SneakyThrows
     @Override
     public void prepare() {
+        long start = System.nanoTime();
         File temporary = this.getTemporary();
         Assert.isTrue(temporary.exists() || temporary.mkdirs(), String.format("Creation of temp workdir at %s failed!", temporary.getAbsolutePath()));
 
-        CountDownLatch countDownLatch = new CountDownLatch(this.children.size());
+        List<Runnable> preparing = new ArrayList<>();
         for (V2FileSystemObject child : this.children) {
-            this.conductor.threadPool.execute(() -> {
-                child.prepare();
-                countDownLatch.countDown();
-            });
+            preparing.add(child::prepare);
         }
-
-        countDownLatch.await();
-        for (Plugin plugin : this.plugins) {
-            plugin.prepare();
+        this.conductor.getPrepareExecutor().invokeAll(preparing);
+        if (this.unchanged) {
+            this.metrics.prepared(start);
+            return;
         }
+        this.preparePlugins();
+        this.metrics.prepared(start);
     }
 
     @Override
     public void delete() {
+        long start = System.nanoTime();
         for (V2FileSystemObject child : this.children) {
             child.delete();
         }
-        File file = this.getFile();
-        Assert.isTrue(FileUtils.delete(file), String.format("Deletion of %s failed!", file.getAbsolutePath()));
+        if (!this.unchanged) {
+            File file = this.getFile();
+            Assert.isTrue(FileUtils.delete(file), String.format("Deletion of %s failed!", file.getAbsolutePath()));
+        }
+        // an unchanged folder is kept along with the children that did not change
+        this.metrics.deleted(start);
     }
 
     @Override
     public void apply() {
+        long start = System.nanoTime();
         File file = this.getFile();
         Assert.isTrue(file.exists() || file.mkdirs(), "Could not guarantee the existence of " + file.getAbsolutePath());
-        for (V2FileSystemObject child : this.children) {
-            child.apply();
-        }
-        for (Plugin plugin : this.plugins) {
-            plugin.execute();
+        V2FileSystemObject.applyAll(this.children);
+        if (!this.unchanged) {
+            this.executePlugins();
         }
+        this.metrics.applied(start);
     }
 }
@@ -0,0 +1,101 @@
+package tk.jasoryeh.conductor;
+
+import com.google.gson.JsonElement;
+import tk.jasoryeh.conductor.cache.DocumentCache;
+import tk.jasoryeh.conductor.config.InvalidConfigurationException;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+import tk.jasoryeh.conductor.log.Logger;
+import tk.jasoryeh.conductor.metrics.RunMetrics;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Includes of a template and of its includes.
+ *
+ * Every include is fetched and parsed once, in parallel with the other includes, no matter how many templates include
+ * it. Including a template that includes the including template again is reported instead of loaded.
+ */
+class V2IncludeGraph {
+    private final Logger logger;
+    private final Conductor conductor;
+    private final Map<String, CompletableFuture<V2Template>> templates = new ConcurrentHashMap<>();
+    // template location -> locations it includes
+    private final Map<String, Set<String>> edges = new HashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "conductor-include");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    V2IncludeGraph(Conductor conductor) {
+        this.logger = new Logger(V2IncludeGraph.class.getSimpleName());
+        this.conductor = conductor;
+    }
+
+    /**
+     * Record the includes of a template, before waiting for them
+     * @param location location of the including template
+     * @param includes locations of the included templates
+     * @throws InvalidConfigurationException if an include leads back to the including template
+     */
+    synchronized void include(String location, List<String> includes) {
+        for (String include : includes) {
+            List<String> path = this.path(include, location, new HashSet<>());
+            if (path != null) {
+                path.add(0, location);
+                throw new InvalidConfigurationException("Templates include each other: " + String.join(" -> ", path));
+            }
+            this.edges.computeIfAbsent(location, key -> new LinkedHashSet<>()).add(include);
+        }
+    }
+
+    /**
+     * Depth first search for a path of includes
+     * @return locations from `from` to `to`, or null if `to` cannot be reached
+     */
+    private List<String> path(String from, String to, Set<String> visited) {
+        if (from.equals(to)) {
+            return new ArrayList<>(Collections.singletonList(to));
+        }
+        if (!visited.add(from)) {
+            return null;
+        }
+        for (String next : this.edges.getOrDefault(from, Collections.emptySet())) {
+            List<String> path = this.path(next, to, visited);
+            if (path != null) {
+                path.add(0, from);
+                return path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Start loading an include, unless it is already loading
+     * @param location URL of the include
+     * @return the parsed include, with its own includes loaded
+     */
+    CompletableFuture<V2Template> load(String location) {
+        return this.templates.computeIfAbsent(location, key -> CompletableFuture.supplyAsync(() -> {
+            this.logger.info("Loading include: " + location);
+            JsonElement parse;
+            try {
+                long start = System.nanoTime();
+                String document = DocumentCache.get().fetch(location);
+                RunMetrics.get().include(location, start, document.getBytes(StandardCharsets.UTF_8).length);
+                parse = LauncherConfiguration.get().parseTemplate(new StringReader(document));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+            return new V2Template(this.conductor,
+                    V2FileSystemObject.assertJsonObject("include @ " + location, parse), this, location);
+        }, this.executor));
+    }
+
+    void close() {
+        this.executor.shutdown();
+    }
+}
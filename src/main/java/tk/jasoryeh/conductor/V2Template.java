@@ -3,6 +3,7 @@ package tk.jasoryeh.conductor;
 import com.google.gson.*;
 import lombok.Getter;
 import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
 import tk.jasoryeh.conductor.log.Logger;
 import tk.jasoryeh.conductor.plugins.PluginFactory;
 import tk.jasoryeh.conductor.plugins.PluginFactoryRepository;
@@ -13,7 +14,8 @@ import tk.jasoryeh.conductor.util.Utility;
 import java.io.File;
 import java.net.URL;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public class V2Template {
     public static final String TEMPORARY_DIR = "launcher_tmp";
@@ -23,6 +25,9 @@ public class V2Template {
     @Getter
     private final Conductor conductor;
     private final JsonObject rootObject;
+    private final V2IncludeGraph includeGraph;
+    @Getter
+    private final String location;
 
     @Getter
     private final File workingDirectory;
@@ -40,10 +45,20 @@ public class V2Template {
     public Map<String, String> variables = new HashMap<>();
     public List<V2Template> includes;
 
+    // built once the variables are known, dropped whenever they change
+    private volatile V2VariableResolver variableResolver;
+
     public V2Template(Conductor conductor, JsonObject rootObject) {
+        this(conductor, rootObject, new V2IncludeGraph(conductor), rootLocation(conductor));
+        this.includeGraph.close();
+    }
+
+    V2Template(Conductor conductor, JsonObject rootObject, V2IncludeGraph includeGraph, String location) {
         this.logger = new Logger(V2Template.class.getSimpleName());
         this.conductor = conductor;
         this.rootObject = rootObject;
+        this.includeGraph = includeGraph;
+        this.location = location;
 
         this.parseMetadata();
         this.logger.info("Template found: " + this.name + " (" + this.version + ")" + " -> " + this.description);
@@ -81,22 +96,43 @@ public class V2Template {
         }
         JsonElement includesElement = conductorMetaElement.get("includes");
         Assert.isTrue(includesElement.isJsonArray(), "'includes' must be an array.");
-        JsonParser jsonParser = new JsonParser();
+        List<String> locations = new ArrayList<>();
         for (JsonElement inclElement : includesElement.getAsJsonArray()) {
             String includeURLString = inclElement.getAsString();
             this.logger.info("Discovered include for merge: " + includeURLString);
-            URL includeURL = new URL(
-                    this.resolveVariables(includeURLString));
-            JsonElement parse = jsonParser.parse(
-                    Utility.remoteFileToString(
-                            includeURL.toString()));
-            includeURLs.add(
-                    new V2Template(this.conductor,
-                            V2FileSystemObject.assertJsonObject("include @ " + includeURL, parse)));
+            String includeURL = new URL(
+                    this.resolveVariables(includeURLString)).toString();
+            if (locations.contains(includeURL)) {
+                this.logger.warn("Include " + includeURL + " is listed more than once, merging it once.");
+                continue;
+            }
+            locations.add(includeURL);
+        }
+
+        // load all includes at once, then merge them in the order they are listed
+        this.includeGraph.include(this.location, locations);
+        List<CompletableFuture<V2Template>> loading = new ArrayList<>();
+        for (String includeURL : locations) {
+            loading.add(this.includeGraph.load(includeURL));
+        }
+        for (CompletableFuture<V2Template> include : loading) {
+            try {
+                includeURLs.add(include.get());
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
         }
         return includeURLs;
     }
 
+    private static String rootLocation(Conductor conductor) {
+        LauncherConfiguration config = conductor == null ? null : conductor.getLauncherConfig();
+        if (config == null || !config.getConfigSource().equals("url")) {
+            return "(root)";
+        }
+        return config.getConfig();
+    }
+
     public void parseMetadata() {
         JsonElement conductorMetadataObject = Objects.requireNonNull(
                 this.rootObject.get("_conductor"),
@@ -121,6 +157,7 @@ public class V2Template {
                 String varValue = vars.get(varKey).getAsString();
                 this.variables.put(varKey, varValue);
             }
+            this.variableResolver = null;
         }
     }
 
@@ -180,6 +217,7 @@ public class V2Template {
             for (Map.Entry<String, String> varEntry : include.variables.entrySet()) {
                 if (!this.variables.containsKey(varEntry.getKey())) {
                     this.variables.put(varEntry.getKey(), varEntry.getValue());
+                    this.variableResolver = null;
                 }
             }
             for (Map.Entry<String, V2Secret> secretEntry : include.secretMap.entrySet()) {
@@ -203,7 +241,7 @@ public class V2Template {
         JsonObject fsDefinition = Objects.requireNonNull(this.getFinalizedFilesystemDefinition());
 
         this.logger.debug("Finalized filesystem template model:");
-        this.logger.debug(Utility.PRETTY_PRINTER.toJson(fsDefinition));
+        this.logger.debug(() -> Utility.PRETTY_PRINTER.toJson(fsDefinition));
 
         return V2FileSystemObject.buildFilesystemModel(this, fsDefinition);
     }
@@ -216,15 +254,11 @@ public class V2Template {
     }
 
     public String resolveVariables(final String inText) {
-        String temp = inText.replaceAll(Pattern.quote("{NEWLINE}"), System.lineSeparator());
-        for (Map.Entry<String, String> varEntry : System.getenv().entrySet()) {
-            temp = temp.replaceAll(Pattern.quote(String.format("{{$%s$}}", varEntry.getKey())), varEntry.getValue())
-                    .replaceAll(Pattern.quote(String.format("{{%s}}", varEntry.getKey())), varEntry.getValue());
-        }
-        for (Map.Entry<String, String> varEntry : this.variables.entrySet()) {
-            temp = temp.replaceAll(Pattern.quote(String.format("{{!%s!}}", varEntry.getKey())), varEntry.getValue())
-                    .replaceAll(Pattern.quote(String.format("{{%s}}", varEntry.getKey())), varEntry.getValue());
+        V2VariableResolver resolver = this.variableResolver;
+        if (resolver == null) {
+            resolver = new V2VariableResolver(System.getenv(), this.variables);
+            this.variableResolver = resolver;
         }
-        return temp;
+        return resolver.resolve(inText);
     }
 }
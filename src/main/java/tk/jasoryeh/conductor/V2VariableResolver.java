@@ -0,0 +1,97 @@
+package tk.jasoryeh.conductor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replaces variable references in text of a template.
+ *
+ * Supported references are `{{$name$}}` for environment variables, `{{!name!}}` for template variables, `{{name}}`
+ * for either (environment variables first) and `{NEWLINE}` for a line separator. Every reference is looked up in a
+ * map built once, in a single scan of the text. Unknown references are left as they are.
+ */
+public class V2VariableResolver {
+    private static final String NEWLINE = "{NEWLINE}";
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    // short texts such as names, URLs and headers repeat across objects, long contents rarely do
+    private static final int MAX_CACHED_LENGTH = 1024;
+    private static final int MAX_CACHED = 4096;
+
+    private final Map<String, String> references = new HashMap<>();
+    private final Map<String, String> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param environment environment variables
+     * @param variables template variables
+     */
+    public V2VariableResolver(Map<String, String> environment, Map<String, String> variables) {
+        for (Map.Entry<String, String> variable : variables.entrySet()) {
+            this.references.put("!" + variable.getKey() + "!", variable.getValue());
+            this.references.put(variable.getKey(), variable.getValue());
+        }
+        for (Map.Entry<String, String> variable : environment.entrySet()) {
+            this.references.put("$" + variable.getKey() + "$", variable.getValue());
+            this.references.put(variable.getKey(), variable.getValue());
+        }
+    }
+
+    public String resolve(String text) {
+        if (text.indexOf('{') < 0) {
+            return text;
+        }
+        if (text.length() > MAX_CACHED_LENGTH) {
+            return this.substitute(text);
+        }
+
+        String resolved = this.cache.get(text);
+        if (resolved == null) {
+            resolved = this.substitute(text);
+            if (this.cache.size() < MAX_CACHED) {
+                this.cache.put(text, resolved);
+            }
+        }
+        return resolved;
+    }
+
+    private String substitute(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        int length = text.length();
+        int copied = 0;
+        int i = text.indexOf('{');
+        while (i >= 0 && i < length) {
+            String value = null;
+            int end = -1;
+            if (text.startsWith(OPEN, i)) {
+                int close = text.indexOf(CLOSE, i + OPEN.length());
+                if (close >= 0) {
+                    String name = text.substring(i + OPEN.length(), close);
+                    // line separators are replaced first, a reference containing one is not a reference
+                    if (!text.startsWith(NEWLINE, i + 1) && !name.contains(NEWLINE)) {
+                        value = this.references.get(name);
+                        end = close + CLOSE.length();
+                    }
+                }
+            }
+            if (value == null && text.startsWith(NEWLINE, i)) {
+                value = System.lineSeparator();
+                end = i + NEWLINE.length();
+            }
+
+            if (value == null) {
+                // not a known reference, it may still start at the next brace
+                i = text.indexOf('{', i + 1);
+                continue;
+            }
+            result.append(text, copied, i).append(value);
+            copied = end;
+            i = text.indexOf('{', end);
+        }
+        if (copied == 0) {
+            return text;
+        }
+        return result.append(text, copied, length).toString();
+    }
+}
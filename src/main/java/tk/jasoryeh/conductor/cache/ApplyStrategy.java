@@ -0,0 +1,63 @@
+package tk.jasoryeh.conductor.cache;
+
+import tk.jasoryeh.conductor.config.InvalidConfigurationException;
+
+/**
+ * How a prepared file is put into place.
+ *
+ * Strategies other than {@link #MOVE} and {@link #COPY} put the file into the artifact cache, stored once per unique
+ * content, and materialize it from there, so identical files share disk space and page cache. They fall back to
+ * {@link #COPY} where the filesystem does not support them.
+ *
+ * Files written by a server itself, e.g. its configurations, must stay writable: the read-only strategies are only
+ * inherited by files downloaded by plugins, other files are moved unless their own definition sets the strategy.
+ */
+public enum ApplyStrategy {
+    /**
+     * Move the prepared file, a copy if it is on another filesystem. The file is writable.
+     */
+    MOVE,
+    /**
+     * Copy the prepared file. The file is writable.
+     */
+    COPY,
+    /**
+     * Copy-on-write clone of the stored file, where the filesystem supports it (btrfs, XFS, ...). The file is writable.
+     */
+    REFLINK,
+    /**
+     * Hard link to the stored file, which must be on the same filesystem. The file is read-only.
+     */
+    HARDLINK,
+    /**
+     * Symbolic link to the stored file, which is kept in the cache while linked to. The file is read-only.
+     */
+    SYMLINK;
+
+    /**
+     * @return whether files are materialized from the artifact cache
+     */
+    public boolean isStored() {
+        return this != MOVE && this != COPY;
+    }
+
+    /**
+     * @return whether files are read-only, changing them would change the stored file
+     */
+    public boolean isReadOnly() {
+        return this == HARDLINK || this == SYMLINK;
+    }
+
+    /**
+     * @param name strategy name, case insensitive
+     * @param where where the name was found, for errors
+     */
+    public static ApplyStrategy of(String name, String where) {
+        try {
+            return ApplyStrategy.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidConfigurationException("Unknown apply strategy " + name + " in " + where
+                    + ", expected move, copy, reflink, hardlink or symlink");
+        }
+    }
+}
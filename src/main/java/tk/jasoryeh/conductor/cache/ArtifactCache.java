@@ -0,0 +1,716 @@
+package tk.jasoryeh.conductor.cache;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import org.apache.commons.io.IOUtils;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+import tk.jasoryeh.conductor.log.Logger;
+import tk.jasoryeh.conductor.util.Assert;
+import tk.jasoryeh.conductor.util.Digests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Persistent, content-addressed store of downloaded artifacts.
+ *
+ * Artifacts are looked up by a key describing where they came from (a URL, or a Jenkins job/build/artifact), and
+ * stored once per unique SHA-256 of their contents. The least recently used artifacts are evicted once the
+ * configured size budget is exceeded.
+ *
+ * Several processes may share a cache: changes to the index are made while holding a lock on the cache directory,
+ * on the latest index written by any of them.
+ */
+public class ArtifactCache {
+    private static final Gson GSON = new Gson();
+    private static final Type INDEX_TYPE = new TypeToken<HashMap<String, Entry>>() {}.getType();
+    /**
+     * Lookups and applied files kept in memory before they are saved to the index
+     */
+    private static final int BATCH = 64;
+    /**
+     * How long an object being symbolically linked is never evicted by any process
+     */
+    private static final long PIN_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static ArtifactCache instance;
+
+    public static synchronized ArtifactCache get() {
+        if (instance == null) {
+            instance = new ArtifactCache(LauncherConfiguration.get().getCacheConfig());
+        }
+        return instance;
+    }
+
+    /**
+     * Build a cache key from the parts identifying an artifact
+     * @param parts source type followed by source specific identifiers
+     * @return key
+     */
+    public static String key(Object... parts) {
+        StringJoiner joiner = new StringJoiner("\n");
+        for (Object part : parts) {
+            joiner.add(String.valueOf(part));
+        }
+        return joiner.toString();
+    }
+
+    private final Logger logger;
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final File directory;
+    private final File objects;
+    private final File indexFile;
+    private final File lockFile;
+    private final long maxSize;
+    /**
+     * SHA-256 of the key -> entry, keys are only stored hashed as URLs may contain credentials
+     */
+    private Map<String, Entry> index;
+    /**
+     * Identifies the index file {@link #index} was read from or saved as, it changes when another process saves it
+     */
+    private String indexStamp;
+    /**
+     * Key hash -> time of lookups not saved to the index yet
+     */
+    private final Map<String, Long> accesses = new HashMap<>();
+    /**
+     * Key hash -> entries of applied files not saved to the index yet
+     */
+    private final Map<String, Entry> adopted = new HashMap<>();
+    /**
+     * Filesystems of destinations -> whether reflinks from the cache to them work
+     */
+    private final Map<FileStore, Boolean> reflinks = new ConcurrentHashMap<>();
+    /**
+     * Strategies already reported to fall back to a copy
+     */
+    private final Set<ApplyStrategy> fallbacks = ConcurrentHashMap.newKeySet();
+    /**
+     * Objects being put into place by {@link #apply(File, File, ApplyStrategy)}
+     */
+    private final Set<String> placing = ConcurrentHashMap.newKeySet();
+
+    public ArtifactCache(LauncherConfiguration.CacheConfig config) {
+        this.logger = new Logger(ArtifactCache.class.getSimpleName());
+        this.enabled = config.isEnabled();
+        this.directory = config.getLocation();
+        this.objects = new File(this.directory, "objects");
+        this.indexFile = new File(this.directory, "index.json");
+        this.lockFile = new File(this.directory, "index.lock");
+        this.maxSize = config.getMaxSize();
+        this.index = this.enabled ? this.loadIndex() : new HashMap<>();
+        if (this.enabled) {
+            this.logger.info("Artifact cache at " + this.directory.getAbsolutePath() + " with " + this.index.size() + " entries.");
+        }
+    }
+
+    @SneakyThrows
+    private Map<String, Entry> loadIndex() {
+        Assert.isTrue(this.objects.exists() || this.objects.mkdirs(),
+                "Failed to create artifact cache in: " + this.objects.getAbsolutePath());
+        if (!this.indexFile.exists()) {
+            this.indexStamp = null;
+            return new HashMap<>();
+        }
+        this.indexStamp = this.stamp();
+        try (Reader reader = Files.newBufferedReader(this.indexFile.toPath(), StandardCharsets.UTF_8)) {
+            Map<String, Entry> loaded = GSON.fromJson(reader, INDEX_TYPE);
+            return loaded == null ? new HashMap<>() : loaded;
+        } catch (Exception e) {
+            this.logger.warn("Artifact cache index is unreadable, starting with an empty cache: " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    @SneakyThrows
+    private void saveIndex() {
+        File temp = new File(this.directory, "index.json.tmp");
+        try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(this.index, INDEX_TYPE, writer);
+        }
+        Files.move(temp.toPath(), this.indexFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.indexStamp = this.stamp();
+    }
+
+    /**
+     * Every save replaces the index file with a new one, its file key (the inode), time and size tell them apart
+     * without reading it
+     */
+    private String stamp() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(this.indexFile.toPath(), BasicFileAttributes.class);
+            return attributes.fileKey() + "/" + attributes.lastModifiedTime().toMillis() + "/" + attributes.size();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the index again if another process saved it since, without taking the lock: saves replace it atomically
+     */
+    private synchronized void refresh() {
+        String stamp = this.indexFile.exists() ? this.stamp() : null;
+        if (!Objects.equals(stamp, this.indexStamp)) {
+            this.index = this.loadIndex();
+            this.applyAccesses(this.index, false);
+        }
+    }
+
+    /**
+     * Apply the access times of lookups to an index
+     * @param saved whether they are saved with it, and can be forgotten
+     */
+    private void applyAccesses(Map<String, Entry> index, boolean saved) {
+        for (Map.Entry<String, Long> access : this.accesses.entrySet()) {
+            Entry entry = index.get(access.getKey());
+            if (entry != null) {
+                entry.lastAccess = Math.max(entry.lastAccess, access.getValue());
+            }
+        }
+        if (saved) {
+            this.accesses.clear();
+        }
+    }
+
+    /**
+     * Add the entries of applied files to an index, and forget them
+     */
+    private void applyAdopted(Map<String, Entry> index) {
+        for (Map.Entry<String, Entry> adoption : this.adopted.entrySet()) {
+            Entry entry = index.computeIfAbsent(adoption.getKey(), hash -> new Entry());
+            entry.sha256 = adoption.getValue().sha256;
+            entry.size = adoption.getValue().size;
+            entry.lastAccess = Math.max(entry.lastAccess, adoption.getValue().lastAccess);
+        }
+        this.adopted.clear();
+    }
+
+    /**
+     * Save the access times of lookups and the files applied since the index was last changed
+     */
+    public void flush() {
+        if (!this.enabled) {
+            return;
+        }
+        synchronized (this) {
+            if (this.accesses.isEmpty() && this.adopted.isEmpty()) {
+                return;
+            }
+        }
+        this.update(index -> {
+            this.evict(null);
+            return null;
+        });
+    }
+
+    /**
+     * Change the index while holding the lock of the cache, starting from the index last saved by any process
+     * @param change changes the index
+     * @return result of the change
+     */
+    @SneakyThrows
+    @SuppressWarnings("try")
+    private synchronized <T> T update(Function<Map<String, Entry>, T> change) {
+        try (FileChannel channel = FileChannel.open(this.lockFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            this.index = this.loadIndex();
+            // saved along with the change
+            this.applyAccesses(this.index, true);
+            this.applyAdopted(this.index);
+            T result = change.apply(this.index);
+            this.saveIndex();
+            return result;
+        }
+    }
+
+    private File objectFile(String sha256) {
+        return new File(new File(this.objects, sha256.substring(0, 2)), sha256);
+    }
+
+    /**
+     * Find the metadata record of a cached artifact. Lookups do not take the lock of the cache, their access times are
+     * saved in batches, and with the next change of the index.
+     * @param key artifact key, see {@link #key(Object...)}
+     * @return the entry, or null if the artifact is not cached
+     */
+    public Entry find(String key) {
+        if (!this.enabled) {
+            return null;
+        }
+        String keyHash = Digests.sha256(key);
+        Entry entry;
+        synchronized (this) {
+            this.refresh();
+            entry = this.index.get(keyHash);
+        }
+        if (entry == null) {
+            return null;
+        }
+        File object = this.objectFile(entry.sha256);
+        if (!object.isFile() || object.length() != entry.size) {
+            this.update(index -> {
+                Entry damaged = index.get(keyHash);
+                if (damaged != null && damaged.sha256.equals(entry.sha256)) {
+                    this.logger.warn("Dropping damaged artifact cache entry " + entry.sha256);
+                    index.remove(keyHash);
+                }
+                return null;
+            });
+            return null;
+        }
+        boolean full;
+        synchronized (this) {
+            entry.lastAccess = System.currentTimeMillis();
+            this.accesses.put(keyHash, entry.lastAccess);
+            full = this.accesses.size() >= BATCH;
+        }
+        if (full) {
+            this.flush();
+        }
+        return entry;
+    }
+
+    /**
+     * Size of a cached artifact, without counting as an access
+     * @param key artifact key, see {@link #key(Object...)}
+     * @return size in bytes, or -1 if the artifact is not cached
+     */
+    public synchronized long sizeOf(String key) {
+        if (this.enabled) {
+            this.refresh();
+        }
+        Entry entry = this.enabled ? this.index.get(Digests.sha256(key)) : null;
+        return entry == null ? -1 : entry.size;
+    }
+
+    /**
+     * Find the stored object of an artifact
+     * @param key artifact key, see {@link #key(Object...)}
+     * @return the stored object, or null if the artifact is not cached
+     */
+    public File lookup(String key) {
+        Entry entry = this.find(key);
+        return entry == null ? null : this.objectFile(entry.sha256);
+    }
+
+    /**
+     * Drop a cached artifact, e.g. when it does not have the digests it should have
+     * @param key artifact key, see {@link #key(Object...)}
+     */
+    public void forget(String key) {
+        if (!this.enabled) {
+            return;
+        }
+        String keyHash = Digests.sha256(key);
+        this.update(index -> {
+            Entry entry = index.remove(keyHash);
+            if (entry != null && index.values().stream().noneMatch(e -> e.sha256.equals(entry.sha256))) {
+                File object = this.objectFile(entry.sha256);
+                this.logger.info("Dropping " + entry.sha256 + " from the artifact cache | Success:" + object.delete());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Store a downloaded artifact in the cache
+     * @param key artifact key, see {@link #key(Object...)}
+     * @param source the downloaded artifact, left untouched
+     * @return the stored object, or null if the cache is disabled
+     */
+    public File store(String key, File source) {
+        return this.store(key, source, null, null);
+    }
+
+    /**
+     * Store a downloaded artifact in the cache along with the HTTP validators it was served with
+     * @param key artifact key, see {@link #key(Object...)}
+     * @param source the downloaded artifact, left untouched
+     * @param etag ETag response header, or null
+     * @param lastModified Last-Modified response header, or null
+     * @return the stored object, or null if the cache is disabled
+     */
+    public File store(String key, File source, String etag, String lastModified) {
+        return this.store(key, source, etag, lastModified, null);
+    }
+
+    /**
+     * Store a downloaded artifact in the cache along with the HTTP validators it was served with
+     * @param key artifact key, see {@link #key(Object...)}
+     * @param source the downloaded artifact, left untouched
+     * @param etag ETag response header, or null
+     * @param lastModified Last-Modified response header, or null
+     * @param knownSha256 hash of the artifact computed while it was downloaded, or null to compute it
+     * @return the stored object, or null if the cache is disabled
+     */
+    @SneakyThrows
+    public File store(String key, File source, String etag, String lastModified, String knownSha256) {
+        if (!this.enabled) {
+            return null;
+        }
+        String sha256 = knownSha256 != null ? knownSha256 : Digests.sha256(source);
+        long size = source.length();
+        File object = this.objectFile(sha256);
+        if (!object.isFile()) {
+            File parent = object.getParentFile();
+            Assert.isTrue(parent.exists() || parent.mkdirs(), "mkdirs - cache");
+            // copy beside the object first so a partially copied artifact is never visible under its hash
+            File temp = new File(parent, sha256 + "." + UUID.randomUUID() + ".tmp");
+            Files.copy(source.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            // applied files may be linked to it
+            Assert.isTrue(temp.setReadOnly(), "Failed to make " + temp.getAbsolutePath() + " read-only");
+            Files.move(temp.toPath(), object.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        String keyHash = Digests.sha256(key);
+        this.update(index -> {
+            Entry entry = new Entry();
+            entry.sha256 = sha256;
+            entry.size = size;
+            entry.lastAccess = System.currentTimeMillis();
+            entry.etag = etag;
+            entry.lastModified = lastModified;
+            index.put(keyHash, entry);
+            this.evict(keyHash);
+            return null;
+        });
+        this.logger.info("Cached " + source.getName() + " as " + sha256);
+        return object;
+    }
+
+    /**
+     * Put a prepared file into place from the cache: it is stored by its contents, then materialized from there. The
+     * entries of stored files are saved in batches, and with the next change of the index, except for symbolic links
+     * whose object has to be kept from the start.
+     * @param prepared the file, moved into the cache or deleted if the cache already has its contents
+     * @param destination where the file is put, replacing what is there
+     * @param strategy how the file is put there, one of the {@link ApplyStrategy#isStored()} strategies
+     * @param knownSha256 hash of the file computed while it was downloaded, or null to compute it
+     * @return the strategy used, {@link ApplyStrategy#COPY} if the requested one is not supported, or null if the
+     * cache is disabled and nothing was done
+     */
+    @SneakyThrows
+    public ApplyStrategy apply(File prepared, File destination, ApplyStrategy strategy, String knownSha256) {
+        if (!this.enabled) {
+            if (this.fallbacks.add(ApplyStrategy.MOVE)) {
+                this.logger.warn("Apply strategies other than move and copy need cache=true, moving files instead");
+            }
+            return null;
+        }
+        String sha256 = knownSha256 != null ? knownSha256 : Digests.sha256(prepared);
+        // never evicted by this process until it is in place
+        this.placing.add(sha256);
+        try {
+            if (strategy == ApplyStrategy.SYMLINK) {
+                // other processes see the pin of the entry
+                return this.place(this.adopt(prepared, sha256), destination, strategy);
+            }
+            return this.placeBatched(prepared, sha256, destination, strategy);
+        } finally {
+            this.placing.remove(sha256);
+        }
+    }
+
+    /**
+     * Store a prepared file by its contents and put it into place without taking the lock, its entry is saved with the
+     * next change of the index. Until then other processes may evict an object that was already stored, the prepared
+     * file is only deleted once the destination has its contents.
+     * @param prepared the file, moved into the cache or deleted if the cache already has its contents
+     * @param sha256 hash of the file
+     * @return the strategy used
+     */
+    @SneakyThrows
+    private ApplyStrategy placeBatched(File prepared, String sha256, File destination, ApplyStrategy strategy) {
+        long size = prepared.length();
+        File object = this.objectFile(sha256);
+        boolean stored = object.isFile() && object.length() == size;
+        if (!stored) {
+            this.storeObject(prepared, object, sha256);
+        }
+        ApplyStrategy used;
+        try {
+            used = this.place(object, destination, strategy);
+        } catch (NoSuchFileException e) {
+            if (!stored) {
+                throw e;
+            }
+            // evicted by another process in the meantime
+            this.storeObject(prepared, object, sha256);
+            stored = false;
+            used = this.place(object, destination, strategy);
+        }
+        if (stored) {
+            Files.delete(prepared.toPath());
+        }
+
+        boolean full;
+        synchronized (this) {
+            Entry entry = new Entry();
+            entry.sha256 = sha256;
+            entry.size = size;
+            entry.lastAccess = System.currentTimeMillis();
+            this.adopted.put(Digests.sha256(key("content", sha256)), entry);
+            full = this.adopted.size() >= BATCH;
+        }
+        if (full) {
+            this.flush();
+        }
+        return used;
+    }
+
+    /**
+     * Store a prepared file by its contents. Its entry is pinned before the file is moved or deleted, so no process
+     * evicts the object before it is in place.
+     * @param source the file, moved into the cache or deleted if the cache already has its contents
+     * @param sha256 hash of the file
+     * @return the stored object, read-only
+     */
+    @SneakyThrows
+    private File adopt(File source, String sha256) {
+        long size = source.length();
+        File object = this.objectFile(sha256);
+        String keyHash = Digests.sha256(key("content", sha256));
+        // objects are only evicted holding the lock, one that exists now is kept while pinned
+        boolean stored = this.update(index -> {
+            Entry entry = index.computeIfAbsent(keyHash, hash -> new Entry());
+            entry.sha256 = sha256;
+            entry.size = size;
+            entry.lastAccess = System.currentTimeMillis();
+            entry.pinnedUntil = entry.lastAccess + PIN_MILLIS;
+            this.evict(keyHash);
+            return object.isFile() && object.length() == size;
+        });
+        if (stored) {
+            Files.delete(source.toPath());
+        } else {
+            this.storeObject(source, object, sha256);
+        }
+        return object;
+    }
+
+    /**
+     * Move a file into the cache as the object of its contents, read-only
+     */
+    private void storeObject(File source, File object, String sha256) throws IOException {
+        File parent = object.getParentFile();
+        Assert.isTrue(parent.exists() || parent.mkdirs(), "mkdirs - cache");
+        File temp = new File(parent, sha256 + "." + UUID.randomUUID() + ".tmp");
+        Files.move(source.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        // linked files must not be able to change the stored contents
+        Assert.isTrue(temp.setReadOnly(), "Failed to make " + temp.getAbsolutePath() + " read-only");
+        Files.move(temp.toPath(), object.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Materialize a stored object, replacing whatever is at the destination
+     * @return the strategy used
+     */
+    private ApplyStrategy place(File object, File destination, ApplyStrategy strategy)
+            throws IOException, InterruptedException {
+        Path source = object.toPath().toAbsolutePath().normalize();
+        Path target = destination.toPath().toAbsolutePath().normalize();
+        Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        ApplyStrategy used = strategy;
+        try {
+            try {
+                switch (strategy) {
+                    case HARDLINK:
+                        Files.createLink(temp, source);
+                        break;
+                    case SYMLINK:
+                        this.pin(object, target);
+                        Files.createSymbolicLink(temp, source);
+                        break;
+                    case REFLINK:
+                        if (!this.reflink(source, temp)) {
+                            used = ApplyStrategy.COPY;
+                        }
+                        break;
+                    default:
+                        used = ApplyStrategy.COPY;
+                }
+            } catch (IOException | UnsupportedOperationException e) {
+                this.logger.debug(() -> "Unable to " + strategy.name().toLowerCase() + " " + target + ": " + e);
+                used = ApplyStrategy.COPY;
+            }
+            if (used == ApplyStrategy.COPY) {
+                Files.deleteIfExists(temp);
+                Files.copy(source, temp);
+            }
+            if (used != ApplyStrategy.HARDLINK && used != ApplyStrategy.SYMLINK) {
+                Assert.isTrue(temp.toFile().setWritable(true), "Failed to make " + temp + " writable");
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (used != strategy && this.fallbacks.add(strategy)) {
+            this.logger.warn(String.format("Unable to %s files from the artifact cache to %s, copying them instead",
+                    strategy.name().toLowerCase(), target.getParent()));
+        }
+        return used;
+    }
+
+    /**
+     * Clone a file with `cp --reflink=always`, there is no portable API for it
+     * @return false if the filesystem does not support reflinks
+     */
+    private boolean reflink(Path source, Path target) throws IOException, InterruptedException {
+        FileStore store = Files.getFileStore(target.getParent());
+        if (Boolean.FALSE.equals(this.reflinks.get(store))) {
+            return false;
+        }
+        Process process;
+        try {
+            process = new ProcessBuilder("cp", "--reflink=always", source.toString(), target.toString())
+                    .redirectErrorStream(true)
+                    .start();
+        } catch (IOException e) {
+            // no cp
+            this.reflinks.put(store, false);
+            return false;
+        }
+        String output;
+        try (InputStream in = process.getInputStream()) {
+            output = IOUtils.toString(in, StandardCharsets.UTF_8).trim();
+        }
+        boolean cloned = process.waitFor(30, TimeUnit.SECONDS) && process.exitValue() == 0;
+        if (!cloned) {
+            process.destroy();
+            Files.deleteIfExists(target);
+            this.logger.debug(() -> "cp --reflink=always failed: " + output);
+        }
+        this.reflinks.putIfAbsent(store, cloned);
+        return cloned;
+    }
+
+    /**
+     * Keep an object in the cache for as long as a symbolic link at the path points to it
+     */
+    private void pin(File object, Path link) {
+        String sha256 = object.getName();
+        String path = link.toString();
+        this.update(index -> {
+            // another process may have evicted the entry, the object itself was just written
+            Entry entry = index.computeIfAbsent(Digests.sha256(key("content", sha256)), hash -> new Entry());
+            entry.sha256 = sha256;
+            entry.size = object.length();
+            entry.lastAccess = System.currentTimeMillis();
+            if (entry.links == null) {
+                entry.links = new ArrayList<>();
+            }
+            if (!entry.links.contains(path)) {
+                entry.links.add(path);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Forget the links of an entry that do not point to its object anymore
+     * @return whether any link still points to it
+     */
+    private boolean isLinked(Entry entry) {
+        if (entry.links == null || entry.links.isEmpty()) {
+            return false;
+        }
+        Path object = this.objectFile(entry.sha256).toPath().toAbsolutePath().normalize();
+        entry.links.removeIf(link -> {
+            Path path = Paths.get(link);
+            try {
+                return !Files.isSymbolicLink(path) || !Files.readSymbolicLink(path).equals(object);
+            } catch (IOException e) {
+                return true;
+            }
+        });
+        return !entry.links.isEmpty();
+    }
+
+    /**
+     * Remove least recently used artifacts until the cache fits its size budget.
+     * @param keep key hash of the artifact just stored, which is never evicted, or null
+     */
+    private void evict(String keep) {
+        Map<String, Long> objectSizes = new HashMap<>();
+        for (Entry entry : this.index.values()) {
+            objectSizes.put(entry.sha256, entry.size);
+        }
+        long total = objectSizes.values().stream().mapToLong(Long::longValue).sum();
+        if (total <= this.maxSize) {
+            return;
+        }
+
+        Set<String> pinned = new HashSet<>();
+        long now = System.currentTimeMillis();
+        for (Entry entry : this.index.values()) {
+            if (this.isLinked(entry) || entry.pinnedUntil > now) {
+                pinned.add(entry.sha256);
+            }
+        }
+        List<Map.Entry<String, Entry>> byAge = new ArrayList<>(this.index.entrySet());
+        byAge.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        for (Map.Entry<String, Entry> oldest : byAge) {
+            if (total <= this.maxSize) {
+                break;
+            }
+            String sha256 = oldest.getValue().sha256;
+            if (oldest.getKey().equals(keep) || pinned.contains(sha256) || this.placing.contains(sha256)) {
+                continue;
+            }
+            this.index.remove(oldest.getKey());
+            boolean referenced = this.index.values().stream().anyMatch(e -> e.sha256.equals(sha256));
+            if (!referenced) {
+                total -= oldest.getValue().size;
+                File object = this.objectFile(sha256);
+                this.logger.info("Evicting " + sha256 + " from the artifact cache | Success:" + object.delete());
+            }
+        }
+    }
+
+    public static class Entry {
+        @Getter
+        String sha256;
+        @Getter
+        long size;
+        @Getter
+        long lastAccess;
+        @Getter
+        String etag;
+        @Getter
+        String lastModified;
+        /**
+         * Symbolic links to the object, which is kept while any of them exists
+         */
+        List<String> links;
+        /**
+         * Time until which the object is never evicted, while a process links it into place
+         */
+        long pinnedUntil;
+
+        public boolean hasValidators() {
+            return this.etag != null || this.lastModified != null;
+        }
+    }
+}
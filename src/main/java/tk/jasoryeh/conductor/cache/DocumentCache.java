@@ -0,0 +1,175 @@
+package tk.jasoryeh.conductor.cache;
+
+import com.google.gson.Gson;
+import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+import tk.jasoryeh.conductor.http.ConductorHttpClient;
+import tk.jasoryeh.conductor.log.Logger;
+import tk.jasoryeh.conductor.util.Assert;
+import tk.jasoryeh.conductor.util.Digests;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Persistent copies of remote configurations and includes.
+ *
+ * A copy younger than the configured TTL is used as is, older copies are revalidated with their server. When the
+ * server fails or does not answer in time, the copy is used instead, so a run can start while the server is down.
+ */
+public class DocumentCache {
+    private static final Gson GSON = new Gson();
+
+    private static DocumentCache instance;
+
+    public static synchronized DocumentCache get() {
+        if (instance == null) {
+            instance = new DocumentCache(LauncherConfiguration.get().getCacheConfig());
+        }
+        return instance;
+    }
+
+    private final Logger logger;
+    private final boolean enabled;
+    private final File directory;
+    private final long ttl;
+    private final long timeout;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "conductor-document");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DocumentCache(LauncherConfiguration.CacheConfig config) {
+        this.logger = new Logger(DocumentCache.class.getSimpleName());
+        this.enabled = config.isDocuments();
+        this.directory = new File(config.getLocation(), "documents");
+        this.ttl = config.getDocumentTtl();
+        this.timeout = config.getDocumentTimeout();
+    }
+
+    /**
+     * Retrieve a document, from its server or from the cache
+     * @param url URL of the document
+     * @return the document
+     */
+    @SneakyThrows
+    public String fetch(String url) {
+        if (!this.enabled) {
+            return ConductorHttpClient.get().getString(url);
+        }
+
+        File file = new File(this.directory, Digests.sha256(url) + ".json");
+        Document cached = this.load(file);
+        if (cached == null) {
+            // nothing to fall back to, wait for the server as long as it takes
+            return this.revalidate(url, file, null);
+        }
+        if (System.currentTimeMillis() - cached.fetched < this.ttl) {
+            this.logger.debug("Using cached " + url);
+            return cached.body;
+        }
+
+        // keeps running after a timeout, the next run gets the new copy
+        Future<String> revalidation = this.executor.submit(() -> this.revalidate(url, file, cached));
+        try {
+            return revalidation.get(this.timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            this.logger.warn("No answer from the server of " + url + " within " + (this.timeout / 1000)
+                    + "s, using the copy cached " + age(cached) + " ago.");
+        } catch (ExecutionException e) {
+            this.logger.warn("Failed to retrieve " + url + ", using the copy cached " + age(cached) + " ago: "
+                    + e.getCause().getMessage());
+        }
+        return cached.body;
+    }
+
+    private String revalidate(String url, File file, Document cached) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        if (cached != null && cached.etag != null) {
+            headers.put("If-None-Match", cached.etag);
+        }
+        if (cached != null && cached.lastModified != null) {
+            headers.put("If-Modified-Since", cached.lastModified);
+        }
+
+        try (ConductorHttpClient.Response response = ConductorHttpClient.get().get(url, headers)) {
+            if (cached != null && response.getCode() == 304) {
+                this.logger.debug("Cached " + url + " is up to date");
+                cached.fetched = System.currentTimeMillis();
+                this.save(file, cached);
+                return cached.body;
+            }
+            if (response.getCode() / 100 != 2) {
+                if (cached != null) {
+                    throw new IOException("Server returned " + response.getCode());
+                }
+                this.logger.warn("[Download] Remote server at " + url + " returned a " + response.getCode() +
+                        ", we ignored this, but you should make sure this is correct.");
+                return response.getText();
+            }
+
+            Document document = new Document();
+            document.etag = response.getHeader("ETag");
+            document.lastModified = response.getHeader("Last-Modified");
+            document.body = response.getText();
+            document.fetched = System.currentTimeMillis();
+            this.save(file, document);
+            return document.body;
+        }
+    }
+
+    private Document load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return GSON.fromJson(reader, Document.class);
+        } catch (Exception e) {
+            this.logger.warn("Ignoring unreadable cached document " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void save(File file, Document document) {
+        try {
+            Assert.isTrue(this.directory.exists() || this.directory.mkdirs(),
+                    "Failed to create document cache in: " + this.directory.getAbsolutePath());
+            File temp = File.createTempFile(file.getName(), ".tmp", this.directory);
+            try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+                GSON.toJson(document, writer);
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            // the document itself was retrieved, only the next run misses the copy
+            this.logger.warn("Failed to cache " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static String age(Document document) {
+        long seconds = Math.max(0, System.currentTimeMillis() - document.fetched) / 1000;
+        if (seconds < 120) {
+            return seconds + "s";
+        }
+        if (seconds < 7200) {
+            return (seconds / 60) + "m";
+        }
+        return (seconds / 3600) + "h";
+    }
+
+    private static class Document {
+        private String etag;
+        private String lastModified;
+        private long fetched;
+        private String body;
+    }
+}
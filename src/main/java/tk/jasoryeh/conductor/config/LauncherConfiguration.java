@@ -1,14 +1,26 @@
 package tk.jasoryeh.conductor.config;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import lombok.Getter;
+import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.SpooledContent;
+import tk.jasoryeh.conductor.V2Template;
+import tk.jasoryeh.conductor.cache.ApplyStrategy;
+import tk.jasoryeh.conductor.cache.DocumentCache;
 import tk.jasoryeh.conductor.log.Logger;
+import tk.jasoryeh.conductor.scheduler.PrepareBackend;
 import tk.jasoryeh.conductor.secrets.JenkinsPluginSecret;
 import tk.jasoryeh.conductor.util.Utility;
 
 import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -31,6 +43,23 @@ public class LauncherConfiguration {
     private final Logger logger;
     @Getter
     private final int poolSize;
+    @Getter
+    private final int applyPoolSize;
+    /**
+     * What prepare tasks run on
+     */
+    @Getter
+    private final PrepareBackend poolBackend;
+    /**
+     * Prepare tasks running at once on virtual threads
+     */
+    @Getter
+    private final int virtualPoolLimit;
+    /**
+     * How prepared files are put into place, unless their definition says otherwise
+     */
+    @Getter
+    private final ApplyStrategy applyStrategy;
     // class
     @Getter
     private final String name;
@@ -45,19 +74,64 @@ public class LauncherConfiguration {
     @Getter
     private final JenkinsPluginSecret jenkinsConfig;
 
+    @Getter
+    private final CacheConfig cacheConfig;
+
+    @Getter
+    private final DownloadConfig downloadConfig;
+
+    @Getter
+    private final HttpConfig httpConfig;
+
+    @Getter
+    private final MetricsConfig metricsConfig;
+
+    /**
+     * Parse templates from a stream of tokens, spooling large inline content to disk
+     */
+    @Getter
+    private final boolean streamingParser;
+    /**
+     * Size in characters above which inline content is spooled by the streaming parser
+     */
+    @Getter
+    private final long spoolThreshold;
+
+    @Getter
+    private final boolean incremental;
+    @Getter
+    private final File incrementalState;
+
     @Getter
     private final boolean debug;
 
     public LauncherConfiguration(PropertiesFile raw) {
         this.logger = new Logger(LauncherConfiguration.class.getSimpleName());
         this.debug = Boolean.parseBoolean(raw.getString("debug", "false"));
+        this.configureLogging(raw);
         this.poolSize = Integer.parseInt(raw.getString("pool", "4"));
+        this.applyPoolSize = Integer.parseInt(raw.getString("pool.apply", String.valueOf(this.poolSize)));
+        this.poolBackend = PrepareBackend.of(raw.getString("pool.backend", "forkjoin"), "pool.backend");
+        this.virtualPoolLimit = Integer.parseInt(raw.getString("pool.virtual.limit", "64"));
+        this.applyStrategy = ApplyStrategy.of(raw.getString("apply.strategy", "move"), "apply.strategy");
         this.name = raw.getString("name", generateName());
         this.config = raw.getString("config");
         this.configSource = raw.getString("config.source", "filesystem").toLowerCase();
+        String parser = raw.getString("config.parser", "gson").toLowerCase();
+        if (!parser.equals("gson") && !parser.equals("streaming")) {
+            throw new InvalidConfigurationException(String.format("Invalid config.parser: %s", parser));
+        }
+        this.streamingParser = parser.equals("streaming");
+        this.spoolThreshold = Long.parseLong(raw.getString("config.parser.spool", "256")) * 1024L;
 
         this.updateConfig = new UpdateConfig(raw);
         this.jenkinsConfig = this.parseJenkinsConfig(raw);
+        this.cacheConfig = new CacheConfig(raw);
+        this.downloadConfig = new DownloadConfig(raw);
+        this.httpConfig = new HttpConfig(raw);
+        this.metricsConfig = new MetricsConfig(raw);
+        this.incremental = Boolean.parseBoolean(raw.getString("incremental", "false"));
+        this.incrementalState = Utility.determineFileFromPath(raw.getString("incremental.state", "launcher_state.json"));
         if (this.updateConfig.isUpdate() &&
                 (this.updateConfig.getSource() == UpdateConfig.UpdateConfigSource.JENKINS && this.jenkinsConfig.getHost() == null)) {
             // validate jenkins is present if we are using jenkins to update
@@ -65,6 +139,18 @@ public class LauncherConfiguration {
         }
     }
 
+    private void configureLogging(PropertiesFile raw) {
+        try {
+            Logger.Level level = this.debug
+                    ? Logger.Level.DEBUG
+                    : Logger.Level.valueOf(raw.getString("log.level", "info").toUpperCase());
+            Logger.Format format = Logger.Format.valueOf(raw.getString("log.format", "auto").toUpperCase());
+            Logger.configure(level, format);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidConfigurationException("Invalid log.level or log.format: " + e.getMessage());
+        }
+    }
+
     private JenkinsPluginSecret parseJenkinsConfig(PropertiesFile raw) {
         return new JenkinsPluginSecret(
                 raw.getString("jenkins.host"),
@@ -116,28 +202,206 @@ public class LauncherConfiguration {
         }
     }
 
+    public static class CacheConfig {
+        @Getter
+        private final boolean enabled;
+        @Getter
+        private final File location;
+        /**
+         * Size budget of the cache in bytes
+         */
+        @Getter
+        private final long maxSize;
+        /**
+         * Keep remote configurations and includes to start from when their server is unreachable
+         */
+        @Getter
+        private final boolean documents;
+        /**
+         * Time in milliseconds a cached remote configuration is used without asking its server
+         */
+        @Getter
+        private final long documentTtl;
+        /**
+         * Time in milliseconds to wait for the server of a cached remote configuration before using the cached copy
+         */
+        @Getter
+        private final long documentTimeout;
+
+        private CacheConfig(PropertiesFile c) {
+            this.enabled = Boolean.parseBoolean(c.getString("cache", "false"));
+            File location = new File(c.getString("cache.location", "launcher_cache"));
+            this.location = location.isAbsolute() ? location : new File(Utility.getCurrentDirectory(), location.getPath());
+            this.maxSize = Long.parseLong(c.getString("cache.size", "2048")) * 1024L * 1024L;
+            this.documents = Boolean.parseBoolean(c.getString("cache.config", String.valueOf(this.enabled)));
+            this.documentTtl = Long.parseLong(c.getString("cache.config.ttl", "0")) * 1000L;
+            this.documentTimeout = Long.parseLong(c.getString("cache.config.timeout", "10")) * 1000L;
+        }
+    }
+
+    public static class DownloadConfig {
+        /**
+         * Number of concurrent ranged requests a large download is split into, 1 to disable
+         */
+        @Getter
+        private final int segments;
+        /**
+         * Size in bytes above which a download is split into segments
+         */
+        @Getter
+        private final long segmentThreshold;
+        /**
+         * Number of artifacts to download from one build above which the whole archive is downloaded instead,
+         * 0 to disable
+         */
+        @Getter
+        private final int jenkinsArchiveThreshold;
+        /**
+         * Number of concurrent downloads from one host to start with
+         */
+        @Getter
+        private final int hostConcurrency;
+        /**
+         * Whether the number of concurrent downloads per host adapts to the throughput and errors of the host
+         */
+        @Getter
+        private final boolean adaptive;
+        /**
+         * Number of times a download not matching its expected digests is downloaded again
+         */
+        @Getter
+        private final int retries;
+
+        private DownloadConfig(PropertiesFile c) {
+            this.segments = Integer.parseInt(c.getString("download.segments", "1"));
+            this.segmentThreshold = Long.parseLong(c.getString("download.segments.threshold", "32")) * 1024L * 1024L;
+            this.jenkinsArchiveThreshold = Integer.parseInt(c.getString("download.jenkins.archive", "0"));
+            this.hostConcurrency = Integer.parseInt(c.getString("download.host.concurrency", "4"));
+            this.adaptive = Boolean.parseBoolean(c.getString("download.host.adaptive", "true"));
+            this.retries = Integer.parseInt(c.getString("download.retries", "2"));
+        }
+    }
+
+    public static class HttpConfig {
+        /**
+         * Maximum number of open connections across all servers
+         */
+        @Getter
+        private final int maxConnections;
+        /**
+         * Maximum number of open connections to a single server
+         */
+        @Getter
+        private final int maxConnectionsPerHost;
+        /**
+         * Maximum time to wait for a connection to be established, in milliseconds
+         */
+        @Getter
+        private final int connectTimeout;
+        /**
+         * Maximum time to wait for data once connected, in milliseconds
+         */
+        @Getter
+        private final int readTimeout;
+
+        private HttpConfig(PropertiesFile c) {
+            this.maxConnections = Integer.parseInt(c.getString("http.connections", "64"));
+            this.maxConnectionsPerHost = Integer.parseInt(c.getString("http.connections.host", "8"));
+            this.connectTimeout = Integer.parseInt(c.getString("http.timeout.connect", "30")) * 1000;
+            this.readTimeout = Integer.parseInt(c.getString("http.timeout.read", "120")) * 1000;
+        }
+    }
+
+    public static class MetricsConfig {
+        /**
+         * Whether the metrics of every run are written at its end
+         */
+        @Getter
+        private final boolean enabled;
+        /**
+         * Where the JSON report is written
+         */
+        @Getter
+        private final File json;
+        /**
+         * Where the OpenMetrics text is written
+         */
+        @Getter
+        private final File openMetrics;
+        /**
+         * Time in milliseconds between samples of the queue depth of the pools
+         */
+        @Getter
+        private final long interval;
+        /**
+         * Whether every run ends by writing a trace of its phases, objects, plugins and downloads, and logging its
+         * critical path
+         */
+        @Getter
+        private final boolean trace;
+        /**
+         * Where the trace is written, in the Trace Event Format
+         */
+        @Getter
+        private final File traceFile;
+
+        private MetricsConfig(PropertiesFile c) {
+            this.enabled = Boolean.parseBoolean(c.getString("metrics", "false"));
+            this.json = Utility.determineFileFromPath(c.getString("metrics.json", "launcher_metrics.json"));
+            this.openMetrics = Utility.determineFileFromPath(c.getString("metrics.openmetrics", "launcher_metrics.prom"));
+            this.interval = Math.max(1, Long.parseLong(c.getString("metrics.interval", "250")));
+            this.trace = Boolean.parseBoolean(c.getString("trace", "false"));
+            this.traceFile = Utility.determineFileFromPath(c.getString("trace.file", "launcher_trace.json"));
+        }
+    }
+
     public String loadRawConfig() {
         switch(this.configSource) {
             case "filesystem":
-                // Try to look for file locally
-                File serverConfig = Utility.determineFileFromPath(this.config);
-                if(!serverConfig.exists()) {
-                    throw new InvalidConfigurationException("The specified configuration was not found in the filesystem.");
-                }
-
-                return Utility.readToString(serverConfig);
+                return Utility.readToString(this.findConfigFile());
             case "url":
-                return Utility.remoteFileToString(this.config);
+                return DocumentCache.get().fetch(this.config);
             default:
                 throw new InvalidConfigurationException(String.format("Invalid config.source: %s", this.configSource));
         }
     }
 
+    private File findConfigFile() {
+        // Try to look for file locally
+        File serverConfig = Utility.determineFileFromPath(this.config);
+        if(!serverConfig.exists()) {
+            throw new InvalidConfigurationException("The specified configuration was not found in the filesystem.");
+        }
+        return serverConfig;
+    }
+
+    @SneakyThrows
+    private Reader openRawConfig() {
+        if (this.configSource.equals("filesystem")) {
+            return Files.newBufferedReader(this.findConfigFile().toPath(), StandardCharsets.UTF_8);
+        }
+        return new StringReader(this.loadRawConfig());
+    }
+
+    /**
+     * Parse a template with the configured parser
+     * @param reader template text
+     * @return the template
+     */
+    @SneakyThrows
+    public JsonElement parseTemplate(Reader reader) {
+        if (!this.streamingParser) {
+            return JsonParser.parseReader(reader);
+        }
+        File spool = new File(new File(Utility.getCurrentDirectory(), V2Template.TEMPORARY_DIR), SpooledContent.SPOOL_DIR);
+        return new StreamingTemplateParser(spool, this.spoolThreshold).parse(reader);
+    }
+
+    @SneakyThrows
     public JsonObject parseConfig() {
-        try {
-            String parseThisJson = this.loadRawConfig();
-            return new JsonParser().parse(parseThisJson).getAsJsonObject();
-        } catch(JsonParseException jsonE) {
+        try (Reader reader = this.openRawConfig()) {
+            return this.parseTemplate(reader).getAsJsonObject();
+        } catch(JsonParseException | JsonProcessingException jsonE) {
             this.logger.error("Your server json configuration is mis-configured. Please double check for errors: " + jsonE.getMessage());
             jsonE.printStackTrace();
         } catch(Exception e) {
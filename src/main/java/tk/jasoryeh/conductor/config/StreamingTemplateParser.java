@@ -0,0 +1,222 @@
+package tk.jasoryeh.conductor.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.gson.*;
+import com.google.gson.internal.LazilyParsedNumber;
+import tk.jasoryeh.conductor.SpooledContent;
+import tk.jasoryeh.conductor.util.Assert;
+import tk.jasoryeh.conductor.util.Digests;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses templates from a stream of tokens instead of a string.
+ *
+ * Inline file content (a `content` string or array of lines) larger than the spool threshold is written to a file as
+ * it is read, and replaced by a {@link SpooledContent} reference, so it never has to be held in memory at once.
+ */
+public class StreamingTemplateParser {
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final String CONTENT = "content";
+
+    private final File spoolDirectory;
+    private final long threshold;
+
+    /**
+     * @param spoolDirectory where large content is written
+     * @param threshold size in characters above which content is spooled
+     */
+    public StreamingTemplateParser(File spoolDirectory, long threshold) {
+        this.spoolDirectory = spoolDirectory;
+        this.threshold = threshold;
+    }
+
+    public JsonElement parse(Reader reader) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(reader)) {
+            JsonToken token = parser.nextToken();
+            return token == null ? JsonNull.INSTANCE : this.read(parser, token);
+        }
+    }
+
+    private JsonElement read(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case START_OBJECT:
+                JsonObject object = new JsonObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if (CONTENT.equals(name) && (value == JsonToken.VALUE_STRING || value == JsonToken.START_ARRAY)) {
+                        object.add(name, this.readContent(parser, value));
+                    } else {
+                        object.add(name, this.read(parser, value));
+                    }
+                }
+                return object;
+            case START_ARRAY:
+                JsonArray array = new JsonArray();
+                JsonToken element;
+                while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    array.add(this.read(parser, element));
+                }
+                return array;
+            case VALUE_STRING:
+                return new JsonPrimitive(parser.getText());
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                // same representation as a tree parsed by gson
+                return new JsonPrimitive(new LazilyParsedNumber(parser.getText()));
+            case VALUE_TRUE:
+                return new JsonPrimitive(true);
+            case VALUE_FALSE:
+                return new JsonPrimitive(false);
+            case VALUE_NULL:
+                return JsonNull.INSTANCE;
+            default:
+                throw new JsonParseException("Unexpected " + token + " at " + parser.getCurrentLocation());
+        }
+    }
+
+    /**
+     * Read inline content, spooling it once it grows past the threshold
+     */
+    private JsonElement readContent(JsonParser parser, JsonToken token) throws IOException {
+        try (Spool spool = new Spool()) {
+            if (token == JsonToken.VALUE_STRING) {
+                parser.getText(spool);
+                return spool.finish(false);
+            }
+
+            JsonToken element;
+            while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (element == JsonToken.VALUE_STRING) {
+                    parser.getText(spool);
+                    spool.endLine();
+                } else {
+                    spool.add(this.read(parser, element));
+                }
+            }
+            return spool.finish(true);
+        }
+    }
+
+    /**
+     * Writer collecting content in memory, moving it to a file past the threshold
+     */
+    private class Spool extends Writer {
+        private final List<JsonElement> lines = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private long length = 0;
+        private boolean invalid = false;
+        private File file;
+        private MessageDigest digest;
+        private Writer out;
+
+        void endLine() throws IOException {
+            if (this.out != null) {
+                this.out.write(System.lineSeparator());
+            } else {
+                this.lines.add(new JsonPrimitive(this.text.toString()));
+                this.text.setLength(0);
+            }
+            this.length += System.lineSeparator().length();
+        }
+
+        /**
+         * Add a line that is not a string, or not text at all
+         */
+        void add(JsonElement element) throws IOException {
+            if (!element.isJsonPrimitive()) {
+                // not lines of text, kept in memory as it is
+                this.invalid = true;
+            }
+            if (this.out != null) {
+                if (this.invalid) {
+                    throw new InvalidConfigurationException("Inline content must be text or lines of text, found: " + element);
+                }
+                this.write(element.getAsString());
+                this.endLine();
+            } else {
+                this.lines.add(element);
+                this.length += element.isJsonPrimitive() ? element.getAsString().length() : 0;
+            }
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            this.length += length;
+            if (this.out == null) {
+                this.text.append(chars, offset, length);
+                if (this.length > StreamingTemplateParser.this.threshold && !this.invalid) {
+                    this.open();
+                }
+            } else {
+                this.out.write(chars, offset, length);
+            }
+        }
+
+        @Override
+        public void write(String string) throws IOException {
+            this.write(string.toCharArray(), 0, string.length());
+        }
+
+        private void open() throws IOException {
+            File directory = StreamingTemplateParser.this.spoolDirectory;
+            Assert.isTrue(directory.exists() || directory.mkdirs(),
+                    "Failed to create spool directory in: " + directory.getAbsolutePath());
+            this.file = File.createTempFile("content", ".txt", directory);
+            this.file.deleteOnExit();
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            this.out = new BufferedWriter(new OutputStreamWriter(
+                    new DigestOutputStream(Files.newOutputStream(this.file.toPath()), this.digest),
+                    StandardCharsets.UTF_8));
+            String separator = System.lineSeparator();
+            for (JsonElement line : this.lines) {
+                this.out.write(line.getAsString());
+                this.out.write(separator);
+            }
+            this.lines.clear();
+            this.out.write(this.text.toString());
+            this.text.setLength(0);
+        }
+
+        JsonElement finish(boolean array) throws IOException {
+            if (this.out != null) {
+                this.out.close();
+                this.out = null;
+                return SpooledContent.reference(this.file, Digests.hex(this.digest.digest()));
+            }
+            if (!array) {
+                return new JsonPrimitive(this.text.toString());
+            }
+            JsonArray result = new JsonArray();
+            this.lines.forEach(result::add);
+            return result;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (this.out != null) {
+                this.out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.out != null) {
+                this.out.close();
+            }
+        }
+    }
+}
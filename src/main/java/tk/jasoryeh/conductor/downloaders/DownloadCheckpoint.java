@@ -0,0 +1,173 @@
+package tk.jasoryeh.conductor.downloaders;
+
+import com.google.gson.Gson;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import org.apache.http.HttpStatus;
+import tk.jasoryeh.conductor.http.ConductorHttpClient;
+import tk.jasoryeh.conductor.util.Digests;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Progress record of a download into a `.part` file, kept beside it so an interrupted download can be resumed with
+ * ranged requests as long as the resource is still the same (same ETag or Last-Modified).
+ */
+public class DownloadCheckpoint {
+    private static final Gson GSON = new Gson();
+
+    /**
+     * SHA-256 of the URL, URLs may contain credentials
+     */
+    private String url;
+    @Getter
+    private String etag;
+    @Getter
+    private String lastModified;
+    /**
+     * Length of the resource, or -1 if the server did not send one
+     */
+    @Getter
+    private long length;
+    @Getter
+    private List<Segment> segments = new ArrayList<>();
+
+    private transient File file;
+
+    /**
+     * Start tracking a download from the response to its initial request
+     * @param file where the checkpoint is kept
+     * @param url downloaded URL
+     * @param response response the download starts from
+     * @param segments number of byte ranges the download is split into
+     */
+    public static DownloadCheckpoint start(File file, String url, ConductorHttpClient.Response response, int segments) {
+        DownloadCheckpoint checkpoint = new DownloadCheckpoint();
+        checkpoint.file = file;
+        checkpoint.url = Digests.sha256(url);
+        checkpoint.length = response.getContentLength();
+        // validators of anything but a full 200 response do not describe the content being written
+        if (response.getCode() == HttpStatus.SC_OK) {
+            checkpoint.etag = response.getHeader("ETag");
+            checkpoint.lastModified = response.getHeader("Last-Modified");
+        }
+
+        if (checkpoint.length <= 0 || segments <= 1) {
+            checkpoint.segments.add(new Segment(0, checkpoint.length > 0 ? checkpoint.length - 1 : -1));
+        } else {
+            long segmentSize = (checkpoint.length + segments - 1) / segments;
+            for (long start = 0; start < checkpoint.length; start += segmentSize) {
+                checkpoint.segments.add(new Segment(start, Math.min(checkpoint.length, start + segmentSize) - 1));
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Load the checkpoint of an earlier download of the same URL
+     * @param file where the checkpoint is kept
+     * @param url downloaded URL
+     * @return checkpoint, or null if there is none for this URL or it can't be resumed
+     */
+    public static DownloadCheckpoint load(File file, String url) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            DownloadCheckpoint checkpoint = GSON.fromJson(reader, DownloadCheckpoint.class);
+            if (checkpoint == null || !Digests.sha256(url).equals(checkpoint.url)
+                    || !checkpoint.isResumable() || checkpoint.segments.isEmpty()) {
+                return null;
+            }
+            checkpoint.file = file;
+            return checkpoint;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Value for If-Range, weak ETags can't be used for ranged requests
+     * @return validator, or null if the download can't be resumed
+     */
+    public String getValidator() {
+        if (this.etag != null && !this.etag.startsWith("W/")) {
+            return this.etag;
+        }
+        return this.lastModified;
+    }
+
+    public boolean isResumable() {
+        return this.getValidator() != null;
+    }
+
+    public long getReceived() {
+        return this.segments.stream().mapToLong(segment -> segment.received).sum();
+    }
+
+    public boolean isComplete() {
+        return this.segments.stream().allMatch(Segment::isDone);
+    }
+
+    /**
+     * Persist the progress, data counted as received must already be written to the `.part` file
+     */
+    @SneakyThrows
+    public synchronized void save() {
+        if (!this.isResumable()) {
+            return;
+        }
+        File temp = new File(this.file.getPath() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(this, writer);
+        }
+        Files.move(temp.toPath(), this.file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @SneakyThrows
+    public void discard() {
+        Files.deleteIfExists(this.file.toPath());
+    }
+
+    /**
+     * Byte range of the resource written by one connection
+     */
+    public static class Segment {
+        @Getter
+        private long start;
+        /**
+         * Inclusive end, or -1 if the length is unknown and the segment ends with the response
+         */
+        @Getter
+        private long end;
+        @Getter
+        private volatile long received;
+        @Getter
+        private volatile boolean done;
+
+        Segment(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getPosition() {
+            return this.start + this.received;
+        }
+
+        void advance(long bytes) {
+            this.received += bytes;
+        }
+
+        void finish() {
+            this.done = true;
+        }
+    }
+}
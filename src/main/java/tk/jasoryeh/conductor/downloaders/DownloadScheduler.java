@@ -0,0 +1,233 @@
+package tk.jasoryeh.conductor.downloaders;
+
+import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.cache.ArtifactCache;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+import tk.jasoryeh.conductor.log.Logger;
+import tk.jasoryeh.conductor.metrics.PluginMetrics;
+import tk.jasoryeh.conductor.scheduler.PrepareExecutor;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs downloads with a limit of concurrent downloads per host. Downloads run in the order they were queued, except
+ * that ones whose size is known (from the artifact cache, see {@link ArtifactCache#sizeOf(String)}) run after those
+ * of unknown size, largest first.
+ *
+ * The limit of each host starts at `download.host.concurrency` and adapts to the host: it grows while the combined
+ * throughput of its downloads keeps up, shrinks when the throughput drops, and is halved when a download fails to
+ * transfer.
+ */
+public class DownloadScheduler {
+    private static final long UNKNOWN_SIZE = -1;
+
+    private static DownloadScheduler instance;
+
+    public static synchronized DownloadScheduler get() {
+        if (instance == null) {
+            LauncherConfiguration config = LauncherConfiguration.get();
+            instance = new DownloadScheduler(
+                    config.getDownloadConfig().getHostConcurrency(),
+                    config.getHttpConfig().getMaxConnectionsPerHost(),
+                    config.getDownloadConfig().isAdaptive());
+        }
+        return instance;
+    }
+
+    private final Logger logger;
+    private final int initialLimit;
+    private final int maxLimit;
+    private final boolean adaptive;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "conductor-download");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DownloadScheduler(int initialLimit, int maxLimit, boolean adaptive) {
+        this.logger = new Logger(DownloadScheduler.class.getSimpleName());
+        this.maxLimit = Math.max(1, maxLimit);
+        this.initialLimit = Math.max(1, Math.min(initialLimit, this.maxLimit));
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * Run a download once the host has a free slot, and wait for it
+     * @param executor executor of the task waiting, which waits through {@link PrepareExecutor#block(Callable)} so it
+     * does not hold up other tasks while the download is queued, or null
+     * @param host host downloaded from
+     * @param estimatedSize expected size in bytes, or -1 if unknown. Unknown sizes are run before known ones.
+     * @param metrics where the download records the bytes it received, to track the throughput of the host, or null
+     * @param download the download
+     * @return result of the download
+     */
+    @SneakyThrows
+    public <T> T run(PrepareExecutor executor, String host, long estimatedSize, PluginMetrics metrics,
+                     Callable<T> download) {
+        Host target = this.hosts.computeIfAbsent(host.toLowerCase(), Host::new);
+        Job<T> job = new Job<>(estimatedSize, this.sequence.getAndIncrement(), metrics, download);
+        target.enqueue(job);
+        try {
+            return executor == null ? job.result.get() : executor.block(job.result::get);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return downloads waiting for a free slot of their host
+     */
+    public int queued() {
+        int queued = 0;
+        for (Host host : this.hosts.values()) {
+            synchronized (host) {
+                queued += host.queue.size();
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * @return downloads running
+     */
+    public int active() {
+        int active = 0;
+        for (Host host : this.hosts.values()) {
+            synchronized (host) {
+                active += host.active;
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Log the limit each host ended up with
+     */
+    public void summary() {
+        for (Host host : this.hosts.values()) {
+            this.logger.info(String.format("%s: %d downloads, %d failed, up to %d at once",
+                    host.name, host.completed, host.failed, host.limit));
+        }
+    }
+
+    private static class Job<T> {
+        private final long estimatedSize;
+        private final long sequence;
+        private final PluginMetrics metrics;
+        private final Callable<T> download;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Job(long estimatedSize, long sequence, PluginMetrics metrics, Callable<T> download) {
+            this.estimatedSize = estimatedSize == UNKNOWN_SIZE ? Long.MAX_VALUE : estimatedSize;
+            this.sequence = sequence;
+            this.metrics = metrics;
+            this.download = download;
+        }
+    }
+
+    private class Host {
+        private final String name;
+        private final PriorityQueue<Job<?>> queue = new PriorityQueue<>(
+                Comparator.<Job<?>>comparingLong(job -> -job.estimatedSize).thenComparingLong(job -> job.sequence));
+        private int limit = DownloadScheduler.this.initialLimit;
+        private int active = 0;
+        private int completed = 0;
+        private int failed = 0;
+
+        // throughput of the downloads completed since the limit last changed
+        private long windowStart = System.nanoTime();
+        private long windowBytes = 0;
+        private int windowCompleted = 0;
+        private double previousThroughput = 0;
+
+        Host(String name) {
+            this.name = name;
+        }
+
+        synchronized void enqueue(Job<?> job) {
+            this.queue.add(job);
+            this.dispatch();
+        }
+
+        private synchronized void dispatch() {
+            while (this.active < this.limit && !this.queue.isEmpty()) {
+                Job<?> job = this.queue.poll();
+                this.active++;
+                DownloadScheduler.this.executor.execute(() -> this.execute(job));
+            }
+        }
+
+        private <T> void execute(Job<T> job) {
+            long received = job.metrics == null ? 0 : job.metrics.getBytes();
+            try {
+                T result = job.download.call();
+                // nothing is received for cache hits and unmodified resources
+                this.succeeded(job.metrics == null ? 0 : job.metrics.getBytes() - received);
+                job.result.complete(result);
+            } catch (Throwable t) {
+                // content without the expected digests was received fine, the host is not to blame
+                this.failed(t instanceof IOException && !(t instanceof IntegrityException));
+                job.result.completeExceptionally(t);
+            } finally {
+                synchronized (this) {
+                    this.active--;
+                    this.dispatch();
+                }
+            }
+        }
+
+        /**
+         * @param received bytes received by the download
+         */
+        private synchronized void succeeded(long received) {
+            this.completed++;
+            if (!DownloadScheduler.this.adaptive || received == 0) {
+                return;
+            }
+            this.windowBytes += received;
+            this.windowCompleted++;
+            if (this.windowCompleted < this.limit) {
+                return;
+            }
+
+            double seconds = Math.max(System.nanoTime() - this.windowStart, 1) / 1e9;
+            double throughput = this.windowBytes / seconds;
+            if (throughput >= this.previousThroughput * 0.9) {
+                this.resize(this.limit + 1);
+            } else {
+                this.resize(this.limit - 1);
+            }
+            this.previousThroughput = throughput;
+        }
+
+        /**
+         * @param transport whether the download failed to transfer, rather than e.g. to verify what it received
+         */
+        private synchronized void failed(boolean transport) {
+            this.completed++;
+            this.failed++;
+            if (DownloadScheduler.this.adaptive && transport) {
+                this.resize(this.limit / 2);
+            }
+        }
+
+        private void resize(int limit) {
+            limit = Math.max(1, Math.min(limit, DownloadScheduler.this.maxLimit));
+            if (limit != this.limit) {
+                DownloadScheduler.this.logger.debug(String.format("%s: %d concurrent downloads -> %d",
+                        this.name, this.limit, limit));
+                this.limit = limit;
+            }
+            this.windowStart = System.nanoTime();
+            this.windowBytes = 0;
+            this.windowCompleted = 0;
+        }
+    }
+}
@@ -2,9 +2,23 @@ package tk.jasoryeh.conductor.downloaders;
 
 import lombok.Getter;
 import lombok.Setter;
+import lombok.SneakyThrows;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.CountingInputStream;
+import tk.jasoryeh.conductor.cache.ArtifactCache;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
 import tk.jasoryeh.conductor.log.Logger;
+import tk.jasoryeh.conductor.metrics.PluginMetrics;
+import tk.jasoryeh.conductor.util.Assert;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
 
 /**
  * A template for other downloader types such as the JsonDownloader and the URLDownloader
@@ -18,6 +32,31 @@ public abstract class Downloader {
     @Getter
     @Setter
     protected boolean overwrite;
+    /**
+     * Whether the downloaded artifact may be stored in and restored from the {@link tk.jasoryeh.conductor.cache.ArtifactCache}
+     */
+    @Getter
+    @Setter
+    protected boolean cacheable;
+    /**
+     * Digests the download must have
+     */
+    @Getter
+    @Setter
+    protected Integrity integrity = Integrity.NONE;
+    /**
+     * Digests computed by the last download
+     */
+    @Getter
+    protected Integrity.Hasher digests;
+    /**
+     * Where the bytes and retries of downloads are recorded, or null
+     */
+    @Getter
+    @Setter
+    protected PluginMetrics metrics;
+    // whether the last download was restored from the cache
+    private boolean restored;
 
     public Downloader(File downloadTo, boolean overwrite) {
         this.logger = new Logger(this.getClass().getSimpleName());
@@ -34,4 +73,138 @@ public abstract class Downloader {
     }
 
     public abstract boolean download();
+
+    /**
+     * Download, again up to `download.retries` times as long as the result does not have the expected digests
+     * @return result of {@link #download()}
+     */
+    public boolean fetch() {
+        long start = System.nanoTime();
+        this.restored = false;
+        boolean downloaded = retrying(this.logger, this.destination.getName(), this.metrics, this::download);
+        if (this.metrics != null) {
+            if (this.restored) {
+                this.metrics.restored();
+            } else if (this.destination.exists()) {
+                this.metrics.transferred(this.destination.length(), start);
+            }
+        }
+        return downloaded;
+    }
+
+    /**
+     * Check the digests computed while downloading, deleting the download if they are not the expected ones
+     * @param hasher digests of the download
+     * @throws IntegrityException if the download does not have the expected digests
+     */
+    protected void verify(Integrity.Hasher hasher) throws IOException {
+        this.digests = hasher;
+        try {
+            this.integrity.verify(hasher, this.destination.getName());
+        } catch (IntegrityException e) {
+            Files.deleteIfExists(this.destination.toPath());
+            throw e;
+        }
+    }
+
+    /**
+     * Copy a cached artifact to the destination, checking its digests while copying
+     * @param key artifact key
+     * @return false if the artifact is not cached
+     * @throws IntegrityException if the cached artifact does not have the expected digests, it is dropped from the
+     * cache so the next attempt downloads it again
+     */
+    @SneakyThrows
+    protected boolean restore(String key) {
+        ArtifactCache cache = ArtifactCache.get();
+        File object = cache.lookup(key);
+        if (object == null) {
+            return false;
+        }
+        File parent = this.destination.getAbsoluteFile().getParentFile();
+        Assert.isTrue(parent.exists() || parent.mkdirs(), "mkdirs - cache");
+        Integrity.Hasher hasher = this.integrity.hasher();
+        try (InputStream in = Files.newInputStream(object.toPath());
+             OutputStream out = hasher.wrap(Files.newOutputStream(this.destination.toPath()))) {
+            IOUtils.copyLarge(in, out, new byte[64 * 1024]);
+        }
+        try {
+            this.verify(hasher);
+        } catch (IntegrityException e) {
+            cache.forget(key);
+            throw e;
+        }
+        this.logger.info("Cache hit, restored " + this.destination.getAbsolutePath());
+        this.restored = true;
+        return true;
+    }
+
+    /**
+     * Read the content as it is received instead of downloading it, see {@link #open()}. When digests are expected,
+     * whatever the consumer did not read is read after it returns, and the digests are checked.
+     * @param consumer reads the content
+     * @throws IntegrityException if the content does not have the expected digests, after the consumer returned
+     */
+    @SneakyThrows
+    public void read(Consumer consumer) {
+        long start = System.nanoTime();
+        try (CountingInputStream in = new CountingInputStream(this.open())) {
+            try {
+                this.read(in, consumer);
+            } finally {
+                if (this.metrics != null) {
+                    this.metrics.transferred(in.getByteCount(), start);
+                }
+            }
+        }
+    }
+
+    private void read(InputStream in, Consumer consumer) throws Exception {
+        if (this.integrity.isEmpty()) {
+            consumer.accept(in);
+            return;
+        }
+        Integrity.Hasher hasher = this.integrity.hasher();
+        InputStream hashed = hasher.wrap(in);
+        consumer.accept(new CloseShieldInputStream(hashed));
+        // IOUtils.skip reads into a buffer shared by every thread, the hasher would see bytes of other streams
+        IOUtils.copyLarge(hashed, NullOutputStream.NULL_OUTPUT_STREAM, new byte[64 * 1024]);
+        this.digests = hasher;
+        this.integrity.verify(hasher, this.destination.getName());
+    }
+
+    public interface Consumer {
+        void accept(InputStream in) throws Exception;
+    }
+
+    /**
+     * Run a download, again up to `download.retries` times as long as it fails with an {@link IntegrityException}
+     * @param what name of the download, for logging
+     * @param metrics where retries are recorded, or null
+     * @param download the download
+     * @return result of the download
+     */
+    @SneakyThrows
+    public static <T> T retrying(Logger logger, String what, PluginMetrics metrics, Callable<T> download) {
+        int retries = LauncherConfiguration.get().getDownloadConfig().getRetries();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return download.call();
+            } catch (IntegrityException e) {
+                if (attempt >= retries) {
+                    throw e;
+                }
+                logger.warn(String.format("%s, downloading %s again (%d/%d)", e.getMessage(), what, attempt + 1, retries));
+                if (metrics != null) {
+                    metrics.retried();
+                }
+            }
+        }
+    }
+
+    /**
+     * Open the content to read it as it is received, instead of downloading it to the destination
+     * @return the content, a cached copy if one can be used. Nothing is cached.
+     */
+    public abstract InputStream open();
 }
@@ -0,0 +1,240 @@
+package tk.jasoryeh.conductor.downloaders;
+
+import com.google.gson.JsonObject;
+import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.V2Template;
+import tk.jasoryeh.conductor.config.InvalidConfigurationException;
+import tk.jasoryeh.conductor.util.Digests;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Digests a download is expected to have.
+ *
+ * Downloads compute digests with a {@link Hasher} while they write, so large files are never read again to be
+ * checked. SHA-256 is always computed, it identifies the contents in the artifact cache.
+ */
+public class Integrity {
+    public static final String SHA256 = "SHA-256";
+    public static final String SHA1 = "SHA-1";
+    public static final String MD5 = "MD5";
+    public static final Integrity NONE = new Integrity(Collections.emptyMap());
+
+    /**
+     * Definition keys -> algorithms
+     */
+    private static final Map<String, String> KEYS = new LinkedHashMap<>();
+
+    static {
+        KEYS.put("sha256", SHA256);
+        KEYS.put("sha1", SHA1);
+        KEYS.put("md5", MD5);
+    }
+
+    /**
+     * Expected digests of a definition, from its `sha256`, `sha1` and `md5` keys
+     * @param definition content definition of an object
+     * @param template template resolving variables
+     */
+    public static Integrity of(JsonObject definition, V2Template template) {
+        Map<String, String> expected = new LinkedHashMap<>();
+        for (Map.Entry<String, String> key : KEYS.entrySet()) {
+            if (definition.has(key.getKey())) {
+                String hex = template.resolveVariables(definition.get(key.getKey()).getAsString()).trim().toLowerCase();
+                int length = digestLength(key.getValue());
+                if (hex.length() != length * 2 || !hex.matches("[0-9a-f]+")) {
+                    throw new InvalidConfigurationException(String.format("%s must be %d hexadecimal characters, found: %s",
+                            key.getKey(), length * 2, hex));
+                }
+                expected.put(key.getValue(), hex);
+            }
+        }
+        return expected.isEmpty() ? NONE : new Integrity(expected);
+    }
+
+    /**
+     * Algorithm -> lowercase hex digest
+     */
+    private final Map<String, String> expected;
+
+    private Integrity(Map<String, String> expected) {
+        this.expected = expected;
+    }
+
+    public boolean isEmpty() {
+        return this.expected.isEmpty();
+    }
+
+    /**
+     * Add an expected digest, unless one is already expected for the algorithm
+     */
+    public Integrity with(String algorithm, String hex) {
+        if (hex == null || this.expected.containsKey(algorithm)) {
+            return this;
+        }
+        Map<String, String> expected = new LinkedHashMap<>(this.expected);
+        expected.put(algorithm, hex.toLowerCase());
+        return new Integrity(expected);
+    }
+
+    /**
+     * Expect the digests of both, for downloads shared by several objects
+     * @throws InvalidConfigurationException if they expect different digests
+     */
+    public Integrity merge(Integrity other, String what) {
+        Map<String, String> expected = new LinkedHashMap<>(this.expected);
+        for (Map.Entry<String, String> digest : other.expected.entrySet()) {
+            String previous = expected.putIfAbsent(digest.getKey(), digest.getValue());
+            if (previous != null && !previous.equals(digest.getValue())) {
+                throw new InvalidConfigurationException(String.format("Different %s digests are expected for %s: %s and %s",
+                        digest.getKey(), what, previous, digest.getValue()));
+            }
+        }
+        return new Integrity(expected);
+    }
+
+    /**
+     * @return the expected SHA-256, or null
+     */
+    public String getSha256() {
+        return this.expected.get(SHA256);
+    }
+
+    /**
+     * Start computing the digests needed to verify a download
+     */
+    public Hasher hasher() {
+        Set<String> algorithms = new LinkedHashSet<>(this.expected.keySet());
+        algorithms.add(SHA256);
+        return new Hasher(algorithms);
+    }
+
+    /**
+     * @param hasher digests of the download, see {@link #hasher()}
+     * @param what name of the download, for errors
+     * @throws IntegrityException if any digest is not the expected one
+     */
+    public void verify(Hasher hasher, String what) throws IntegrityException {
+        for (Map.Entry<String, String> digest : this.expected.entrySet()) {
+            String actual = hasher.hex(digest.getKey());
+            if (!digest.getValue().equals(actual)) {
+                throw new IntegrityException(String.format("%s of %s is %s, expected %s",
+                        digest.getKey(), what, actual, digest.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Computes digests of bytes as they are read or written
+     */
+    public static class Hasher {
+        private final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+        private final Map<String, String> results = new HashMap<>();
+        private long length = 0;
+
+        @SneakyThrows
+        private Hasher(Collection<String> algorithms) {
+            for (String algorithm : algorithms) {
+                this.digests.put(algorithm, MessageDigest.getInstance(algorithm));
+            }
+        }
+
+        public void update(byte[] bytes, int offset, int length) {
+            for (MessageDigest digest : this.digests.values()) {
+                digest.update(bytes, offset, length);
+            }
+            this.length += length;
+        }
+
+        /**
+         * Number of bytes hashed
+         */
+        public long length() {
+            return this.length;
+        }
+
+        /**
+         * Digest of everything hashed, nothing can be hashed anymore once it was asked for
+         * @return lowercase hex digest, or null if the algorithm was not computed
+         */
+        public synchronized String hex(String algorithm) {
+            MessageDigest digest = this.digests.get(algorithm);
+            if (digest == null) {
+                return null;
+            }
+            return this.results.computeIfAbsent(algorithm, key -> Digests.hex(digest.digest()));
+        }
+
+        public String sha256() {
+            return this.hex(SHA256);
+        }
+
+        /**
+         * @return stream hashing everything read from it
+         */
+        public InputStream wrap(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return this.read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        Hasher.this.update(buffer, offset, read);
+                    }
+                    return read;
+                }
+
+                @Override
+                public long skip(long count) throws IOException {
+                    // skipped bytes must be hashed too
+                    byte[] buffer = new byte[(int) Math.min(8192, Math.max(count, 1))];
+                    long skipped = 0;
+                    int read;
+                    while (skipped < count && (read = this.read(buffer, 0, (int) Math.min(buffer.length, count - skipped))) != -1) {
+                        skipped += read;
+                    }
+                    return skipped;
+                }
+
+                @Override
+                public boolean markSupported() {
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * @return stream hashing everything written to it
+         */
+        public OutputStream wrap(OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    this.write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    this.out.write(buffer, offset, length);
+                    Hasher.this.update(buffer, offset, length);
+                }
+            };
+        }
+    }
+
+    @SneakyThrows
+    private static int digestLength(String algorithm) {
+        return MessageDigest.getInstance(algorithm).getDigestLength();
+    }
+}
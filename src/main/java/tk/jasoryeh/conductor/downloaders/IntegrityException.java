@@ -0,0 +1,14 @@
+package tk.jasoryeh.conductor.downloaders;
+
+import java.io.IOException;
+
+/**
+ * A download does not have the digest it is expected to have
+ */
+public class IntegrityException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public IntegrityException(String message) {
+        super(message);
+    }
+}
@@ -2,21 +2,21 @@ package tk.jasoryeh.conductor.downloaders;
 
 import com.offbytwo.jenkins.JenkinsServer;
 import com.offbytwo.jenkins.model.Artifact;
-import com.offbytwo.jenkins.model.Build;
-import com.offbytwo.jenkins.model.Job;
-import com.offbytwo.jenkins.model.JobWithDetails;
+import com.offbytwo.jenkins.model.BuildWithDetails;
 import lombok.Getter;
 import lombok.SneakyThrows;
+import org.apache.commons.io.IOUtils;
+import tk.jasoryeh.conductor.cache.ArtifactCache;
 import tk.jasoryeh.conductor.secrets.JenkinsPluginSecret;
 import tk.jasoryeh.conductor.util.Assert;
 import tk.jasoryeh.conductor.util.FileUtils;
 import tk.jasoryeh.conductor.util.TerminalColors;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.InputStream;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.List;
 
 /**
@@ -38,6 +38,8 @@ public class JenkinsDownloader extends Downloader {
         this.job = job;
         this.artifactName = artifact;
         this.number = buildNum;
+        // artifacts of a build never change once it has finished
+        this.cacheable = true;
     }
 
     @Getter
@@ -51,52 +53,119 @@ public class JenkinsDownloader extends Downloader {
     @SneakyThrows
     @Override
     public boolean download() {
-        this.jenkins = this.auth.toJenkinsAPI();
-
-        Job job = this.jenkins.getJobs().get(this.job);
-        if(job == null) {
-            throw new IllegalArgumentException(String.format("Unknown Jenkins job: %s", this.job));
+        ArtifactCache cache = ArtifactCache.get();
+        if (this.cacheable && this.number != LATEST_SUCCESSFUL_ARTIFACT
+                && this.restore(this.cacheKey(this.number))) {
+            return true;
         }
 
-        JobWithDetails details = job.details();
-        Build build = this.number == LATEST_SUCCESSFUL_ARTIFACT ?
-                details.getLastSuccessfulBuild() :
-                details.getBuildByNumber(this.number);
-        List<Artifact> artifacts =  build.details().getArtifacts();
-        this.log(String.format("Found %d artifacts for job %s", artifacts.size(), this.job));
+        JenkinsSession session = JenkinsSession.get();
+        this.jenkins = session.client(this.auth);
 
-        this.log("Looking for artifact: " + this.artifactName);
-        for (Artifact artifact : artifacts) {
-            this.log(String.format("Found artifact | %s | %s", artifact.getFileName(), artifact.getRelativePath()));
+        int buildNumber = session.buildNumber(this.auth, this.job, this.number);
+        String cacheKey = this.cacheKey(buildNumber);
+        if (this.cacheable && this.number == LATEST_SUCCESSFUL_ARTIFACT
+                && this.restore(cacheKey)) {
+            return true;
+        }
 
-            if (!artifact.getFileName().equalsIgnoreCase(this.artifactName)) {
-                continue;
-            }
+        BuildWithDetails build = session.build(this.auth, this.job, buildNumber);
 
-            this.log(String.format(TerminalColors.GREEN.wrap("Artifact matched") + " | %s | %s |  retrieving from jenkins as | %s",
-                    artifact.getFileName(),
-                    artifact.getDisplayPath(),
-                    this.destination.getAbsolutePath()));
+        Artifact artifact = this.find(build);
+        if (artifact == null) {
+            this.log(TerminalColors.RED.wrap("Unable to find the artifact/build") + " | " + this.job + " | " + this.artifactName + " #" + this.number);
+            return false;
+        }
+        this.log(String.format("Retrieving %s from jenkins as | %s", artifact.getFileName(), this.destination.getAbsolutePath()));
+        this.fingerprint(session, buildNumber, artifact);
+
+        Assert.isTrue(FileUtils.delete(this.destination), "Preparing destination failed: " + this.destination.getAbsolutePath());
+        // a batch downloads for members whose folders may not be prepared yet
+        File parent = this.destination.getAbsoluteFile().getParentFile();
+        Assert.isTrue(parent.exists() || parent.mkdirs(), "mkdirs - jenkins");
+        Integrity.Hasher hasher = this.integrity.hasher();
+        try (InputStream inputStream = build.downloadArtifact(artifact);
+             OutputStream outputStream = hasher.wrap(Files.newOutputStream(this.destination.toPath()))) {
+            IOUtils.copyLarge(inputStream, outputStream, new byte[64 * 1024]);
+        }
+        this.verify(hasher);
 
-            InputStream inputStream = build.details().downloadArtifact(artifact);
-            Assert.isTrue(FileUtils.delete(this.destination), "Preparing destination failed: " + this.destination.getAbsolutePath());
+        this.log(TerminalColors.GREEN.wrap("Successfully transferred ") + this.artifactName);
 
-            ReadableByteChannel readableByteChannel = Channels.newChannel(inputStream);
-            FileOutputStream outputStream = new FileOutputStream(this.destination);
-            outputStream.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
+        if (this.cacheable) {
+            cache.store(cacheKey, this.destination, null, null, hasher.sha256());
+        }
+        return true;
+    }
 
-            this.log(TerminalColors.GREEN.wrap("Successfully transferred ") + this.artifactName);
+    /**
+     * Open the artifact as it is received from Jenkins, or its cached copy
+     */
+    @SneakyThrows
+    @Override
+    public InputStream open() {
+        ArtifactCache cache = ArtifactCache.get();
+        JenkinsSession session = JenkinsSession.get();
+        this.jenkins = session.client(this.auth);
+        int buildNumber = this.number == LATEST_SUCCESSFUL_ARTIFACT
+                ? session.buildNumber(this.auth, this.job, this.number) : this.number;
+        File cached = this.cacheable ? cache.lookup(this.cacheKey(buildNumber)) : null;
+        if (cached != null) {
+            this.log("Reading cached copy of " + this.artifactName + " #" + buildNumber);
+            return Files.newInputStream(cached.toPath());
+        }
 
-            outputStream.close();
-            readableByteChannel.close();
-            inputStream.close();
-            return true;
+        BuildWithDetails build = session.build(this.auth, this.job, buildNumber);
+        Artifact artifact = this.find(build);
+        if (artifact == null) {
+            throw new FileNotFoundException("Unable to find the artifact/build | " + this.job + " | "
+                    + this.artifactName + " #" + this.number);
         }
+        this.fingerprint(session, buildNumber, artifact);
+        this.log("Streaming " + artifact.getFileName() + " from jenkins");
+        return build.downloadArtifact(artifact);
+    }
 
-        this.log(TerminalColors.RED.wrap("Unable to find the artifact/build") + " | " + this.job + " | " + this.artifactName + " #" + this.number);
-        return false;
+    /**
+     * Find the artifact of this downloader in a build
+     * @return the artifact, or null if the build has no such artifact
+     */
+    private Artifact find(BuildWithDetails build) {
+        List<Artifact> artifacts = build.getArtifacts();
+        this.log(String.format("Found %d artifacts for job %s", artifacts.size(), this.job));
+
+        this.log("Looking for artifact: " + this.artifactName);
+        for (Artifact artifact : artifacts) {
+            this.log(String.format("Found artifact | %s | %s", artifact.getFileName(), artifact.getRelativePath()));
+
+            if (artifact.getFileName().equalsIgnoreCase(this.artifactName)) {
+                this.log(String.format(TerminalColors.GREEN.wrap("Artifact matched") + " | %s | %s",
+                        artifact.getFileName(), artifact.getDisplayPath()));
+                return artifact;
+            }
+        }
+        return null;
     }
     
+    /**
+     * Expect the MD5 fingerprint Jenkins recorded for the artifact, if it recorded one
+     */
+    private void fingerprint(JenkinsSession session, int buildNumber, Artifact artifact) {
+        String md5 = session.fingerprints(this.auth, this.job, buildNumber).get(artifact.getFileName().toLowerCase());
+        if (md5 != null) {
+            this.logger.debug("Expecting fingerprint " + md5 + " for " + artifact.getFileName());
+            this.integrity = this.integrity.with(Integrity.MD5, md5);
+        }
+    }
+
+    private String cacheKey(int buildNumber) {
+        return cacheKey(this.auth, this.job, buildNumber, this.artifactName);
+    }
+
+    public static String cacheKey(JenkinsPluginSecret auth, String job, int buildNumber, String artifactName) {
+        return ArtifactCache.key("jenkins", auth.getHost(), job, buildNumber, artifactName);
+    }
+
     private void log(String msg) {
         this.logger.info(msg);
     }
@@ -0,0 +1,156 @@
+package tk.jasoryeh.conductor.downloaders;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.offbytwo.jenkins.JenkinsServer;
+import com.offbytwo.jenkins.model.Build;
+import com.offbytwo.jenkins.model.BuildWithDetails;
+import com.offbytwo.jenkins.model.JobWithDetails;
+import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.log.Logger;
+import tk.jasoryeh.conductor.secrets.JenkinsPluginSecret;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Jenkins clients and metadata shared by every Jenkins download of a run.
+ *
+ * Each value is loaded at most once, downloads asking for a value that is still being loaded wait for that request
+ * instead of sending their own. Failed loads are not kept so a later download can try again.
+ */
+public class JenkinsSession {
+    private static final int LATEST_SUCCESSFUL_BUILD = -1;
+
+    private static JenkinsSession instance;
+
+    public static synchronized JenkinsSession get() {
+        if (instance == null) {
+            instance = new JenkinsSession();
+        }
+        return instance;
+    }
+
+    private final Logger logger;
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> values = new ConcurrentHashMap<>();
+
+    public JenkinsSession() {
+        this.logger = new Logger(JenkinsSession.class.getSimpleName());
+    }
+
+    /**
+     * Client for the server of a secret, shared by every download using the same server and credentials
+     */
+    public JenkinsServer client(JenkinsPluginSecret secret) {
+        return this.load(this.key("client", secret), secret::toJenkinsAPI);
+    }
+
+    /**
+     * Details of a job, looked up by name
+     * @throws IllegalArgumentException if the server has no such job
+     */
+    public JobWithDetails job(JenkinsPluginSecret secret, String job) {
+        return this.load(this.key("job", secret, job), () -> {
+            this.logger.debug("Looking up Jenkins job " + job + " on " + secret.getHost());
+            JobWithDetails details = this.client(secret).getJob(job);
+            if (details == null) {
+                throw new IllegalArgumentException(String.format("Unknown Jenkins job: %s", job));
+            }
+            return details;
+        });
+    }
+
+    /**
+     * Resolve a build number
+     * @param number build number, or -1 for the last successful build
+     * @return the build number
+     */
+    public int buildNumber(JenkinsPluginSecret secret, String job, int number) {
+        if (number != LATEST_SUCCESSFUL_BUILD) {
+            return number;
+        }
+        return this.load(this.key("lastSuccessfulBuild", secret, job), () -> {
+            Build build = this.job(secret, job).getLastSuccessfulBuild();
+            if (build == null) {
+                throw new IllegalArgumentException(String.format("Jenkins job %s has no successful build", job));
+            }
+            return build.getNumber();
+        });
+    }
+
+    /**
+     * Details of a build, including its artifacts
+     * @param number build number, or -1 for the last successful build
+     */
+    public BuildWithDetails build(JenkinsPluginSecret secret, String job, int number) {
+        int resolved = this.buildNumber(secret, job, number);
+        return this.load(this.key("build", secret, job, resolved), () -> {
+            Build build = this.job(secret, job).getBuildByNumber(resolved);
+            if (build == null) {
+                throw new IllegalArgumentException(String.format("Unknown build #%d of Jenkins job %s", resolved, job));
+            }
+            return build.details();
+        });
+    }
+
+    /**
+     * MD5 fingerprints Jenkins recorded for the artifacts of a build
+     * @param number build number, or -1 for the last successful build
+     * @return lowercase file name -> MD5, empty if fingerprints are not recorded for the build
+     */
+    public Map<String, String> fingerprints(JenkinsPluginSecret secret, String job, int number) {
+        int resolved = this.buildNumber(secret, job, number);
+        return this.load(this.key("fingerprints", secret, job, resolved), () -> {
+            BuildWithDetails build = this.build(secret, job, resolved);
+            Map<String, String> fingerprints = new HashMap<>();
+            try {
+                JsonObject details = JsonParser.parseString(build.getClient()
+                        .get(build.getUrl() + "?tree=fingerprint%5BfileName,hash%5D")).getAsJsonObject();
+                if (details.has("fingerprint") && details.get("fingerprint").isJsonArray()) {
+                    for (JsonElement fingerprint : details.getAsJsonArray("fingerprint")) {
+                        JsonObject object = fingerprint.getAsJsonObject();
+                        fingerprints.put(object.get("fileName").getAsString().toLowerCase(), object.get("hash").getAsString());
+                    }
+                }
+            } catch (Exception e) {
+                this.logger.debug("No fingerprints for build #" + resolved + " of " + job + ": " + e.getMessage());
+            }
+            return fingerprints;
+        });
+    }
+
+    private String key(String type, JenkinsPluginSecret secret, Object... parts) {
+        StringBuilder key = new StringBuilder(type).append('\n').append(secret.identity());
+        for (Object part : parts) {
+            key.append('\n').append(part);
+        }
+        return key.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    @SneakyThrows
+    private <T> T load(String key, Callable<T> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = this.values.putIfAbsent(key, future);
+        if (existing == null) {
+            try {
+                future.complete(loader.call());
+            } catch (Throwable t) {
+                this.values.remove(key, future);
+                future.completeExceptionally(t);
+            }
+            existing = future;
+        }
+
+        try {
+            return (T) existing.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+}
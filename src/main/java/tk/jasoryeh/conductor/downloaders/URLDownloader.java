@@ -3,28 +3,77 @@ package tk.jasoryeh.conductor.downloaders;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.SneakyThrows;
-import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.http.HttpStatus;
+import tk.jasoryeh.conductor.cache.ArtifactCache;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+import tk.jasoryeh.conductor.http.ConductorHttpClient;
 import tk.jasoryeh.conductor.util.TerminalColors;
 
+import java.io.EOFException;
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Retrieve files from a link
  */
 public class URLDownloader extends Downloader {
+    /**
+     * Bytes written by a connection between two saves of the download checkpoint
+     */
+    private static final long CHECKPOINT_INTERVAL = 8L * 1024 * 1024;
+    /**
+     * Threads fetching the additional segments of segmented downloads
+     */
+    private static final ExecutorService SEGMENT_POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "conductor-segment");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     @Getter
     private String url;
 
     @Getter
     @Setter
     protected Map<String, String> headers;
+    /**
+     * Whether a cached copy must be revalidated with the server before it is reused
+     */
+    @Getter
+    @Setter
+    protected boolean revalidate = true;
+    /**
+     * Number of concurrent ranged requests a large download is split into, 1 to disable
+     */
+    @Getter
+    @Setter
+    protected int segments;
+    /**
+     * Size in bytes above which a download is split into segments
+     */
+    @Getter
+    @Setter
+    protected long segmentThreshold;
 
     /**
      * Downloader for file links
@@ -37,56 +86,493 @@ public class URLDownloader extends Downloader {
         super(destination, overwrite);
         this.url = url;
         this.headers = headers;
+        LauncherConfiguration.DownloadConfig downloadConfig = LauncherConfiguration.get().getDownloadConfig();
+        this.segments = downloadConfig.getSegments();
+        this.segmentThreshold = downloadConfig.getSegmentThreshold();
     }
 
     /**
      * Retrieve the file from the internet or whatever source and save it to temporary storage
+     *
+     * When a cached copy of this URL exists, the request is made conditional on the validators (ETag/Last-Modified)
+     * it was served with, and a 304 Not Modified response reuses the cached copy.
+     *
+     * The file is written to a `.part` file next to the destination with a checkpoint of the progress, so a download
+     * interrupted by a crash or network failure is resumed by the next attempt if the resource did not change.
      */
     @SneakyThrows
     @Override
     public boolean download() {
-        String useThisUrl = this.url;
+        ArtifactCache cache = ArtifactCache.get();
+        String cacheKey = ArtifactCache.key("http", this.url);
+        ArtifactCache.Entry cached = this.cacheable ? cache.find(cacheKey) : null;
+        if (cached != null && !this.revalidate && this.restore(cacheKey)) {
+            return true;
+        }
+
+        File out = this.destination;
+        File part = new File(out.getPath() + ".part");
+        File checkpointFile = new File(out.getPath() + ".part.json");
 
-        boolean basic = false;
-        String basicAuthString = null;
-        String locationDomain = useThisUrl.split("/")[2];
-        if(locationDomain.contains("@")) {
-            basic = true;
-            basicAuthString = locationDomain.split("@")[0];
-            useThisUrl = useThisUrl.replaceFirst(Pattern.quote(basicAuthString + "@"), "");
-            this.log("Using BASIC authentication. Auth length " + basicAuthString.length());
+        DownloadCheckpoint checkpoint = part.isFile() ? DownloadCheckpoint.load(checkpointFile, this.url) : null;
+        if (checkpoint != null) {
+            this.log(String.format("Resuming download of %s at %d of %d bytes",
+                    this.url, checkpoint.getReceived(), checkpoint.getLength()));
+            if (this.resume(checkpoint, part)) {
+                this.complete(part, checkpoint, cache, cacheKey, null);
+                return true;
+            }
+            this.log("The resource changed since the interrupted download, restarting it...");
+            checkpoint.discard();
         }
 
-        HttpURLConnection huc = (HttpURLConnection) new URL(useThisUrl).openConnection();
-        if(basic) {
-            String basicB64 = new String(Base64.encodeBase64(basicAuthString.getBytes(StandardCharsets.UTF_8)));
-            huc.setRequestProperty("Authorization", "Basic " + basicB64);
-            this.log("Appended authorizaton header, b64 len:" + basicB64.length());
+        ConductorHttpClient.Response response = this.request(conditions(cached));
+        if (response.getCode() == HttpStatus.SC_NOT_MODIFIED) {
+            response.close();
+            this.log("Not modified since the last download, reusing cached copy of " + this.url);
+            if (this.restore(cacheKey)) {
+                return true;
+            }
+            // evicted since we looked it up, fetch it again in full
+            response = this.request(Collections.emptyMap());
         }
+        if (response.getCode() / 100 != 2) {
+            response.close();
+            throw new IOException("Server returned " + response.getCode() + " for " + this.url);
+        }
+
+        if (out.exists()) this.log("Deleting from temporary folder " + out.getAbsolutePath() + " | Success:" + out.delete());
 
-        this.headers.entrySet().forEach(entry -> huc.setRequestProperty(entry.getValue(), entry.getKey()));
+        this.log("Downloading file... " + out.getAbsolutePath() + " from " + url);
 
-        // Protect against 403 by setting default user-agent.
-        if(huc.getRequestProperty("User-Agent") == null) {
-            huc.setRequestProperty("User-Agent", "conductor, Java");
+        boolean transferred = false;
+        Integrity.Hasher hasher = null;
+        if (this.canSegment(response)) {
+            checkpoint = DownloadCheckpoint.start(checkpointFile, this.url, response, this.segments);
+            this.log(String.format("Downloading %d bytes in %d segments",
+                    checkpoint.getLength(), checkpoint.getSegments().size()));
+            transferred = this.transfer(response, checkpoint, part, null);
+            if (!transferred) {
+                this.log("Falling back to downloading over a single connection...");
+                checkpoint.discard();
+                response = this.request(Collections.emptyMap());
+                if (response.getCode() / 100 != 2) {
+                    response.close();
+                    throw new IOException("Server returned " + response.getCode() + " for " + this.url);
+                }
+            }
+        }
+        if (!transferred) {
+            checkpoint = DownloadCheckpoint.start(checkpointFile, this.url, response, 1);
+            // over a single connection bytes arrive in order, hash them as they are written
+            hasher = this.cacheable || !this.integrity.isEmpty() ? this.integrity.hasher() : null;
+            this.transfer(response, checkpoint, part, hasher);
         }
 
-        File out = this.destination;
+        this.complete(part, checkpoint, cache, cacheKey, hasher);
+        return true;
+    }
 
-        if (out.exists()) this.log("Deleting from temporary folder " + out.getAbsolutePath() + " | Success:" + out.delete());
+    /**
+     * Open the response as it is received. A cached copy is revalidated like for {@link #download()}.
+     */
+    @SneakyThrows
+    @Override
+    public InputStream open() {
+        ArtifactCache cache = ArtifactCache.get();
+        String cacheKey = ArtifactCache.key("http", this.url);
+        File cached = this.cacheable ? cache.lookup(cacheKey) : null;
+        if (cached != null && !this.revalidate) {
+            this.log("Reading cached copy of " + this.url);
+            return Files.newInputStream(cached.toPath());
+        }
 
-        this.log("Downloading file... " + out.getAbsolutePath() + " from " + url);
+        ConductorHttpClient.Response response = this.request(
+                cached == null ? Collections.emptyMap() : conditions(cache.find(cacheKey)));
+        if (response.getCode() == HttpStatus.SC_NOT_MODIFIED && cached != null && cached.isFile()) {
+            response.close();
+            this.log("Not modified since the last download, reading cached copy of " + this.url);
+            return Files.newInputStream(cached.toPath());
+        }
+        if (response.getCode() / 100 != 2) {
+            response.close();
+            throw new IOException("Server returned " + response.getCode() + " for " + this.url);
+        }
+        this.log("Streaming " + this.url);
+        return new ResponseInputStream(response);
+    }
 
-        InputStream inputStream = huc.getInputStream();
-        FileUtils.copyInputStreamToFile(inputStream, out);
-        inputStream.close();
+    /**
+     * Headers making a request conditional on the validators of a cached copy
+     * @param cached cached copy, or null
+     */
+    private static Map<String, String> conditions(ArtifactCache.Entry cached) {
+        Map<String, String> conditions = new HashMap<>();
+        if (cached != null && cached.hasValidators()) {
+            if (cached.getEtag() != null) {
+                conditions.put("If-None-Match", cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                conditions.put("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        return conditions;
+    }
 
+    /**
+     * Check the digests of the finished `.part` file, move it into place and cache it
+     * @param hasher digests computed while the file was written, null if it was written in segments or resumed
+     * @throws IntegrityException if it does not have the expected digests, the `.part` file is discarded
+     */
+    private void complete(File part, DownloadCheckpoint checkpoint, ArtifactCache cache, String cacheKey,
+                          Integrity.Hasher hasher) throws IOException {
+        File out = this.destination;
+        if (hasher == null && !this.integrity.isEmpty()) {
+            // segments are written out of order, they can only be hashed together once all of them are there
+            hasher = this.integrity.hasher();
+            try (InputStream in = hasher.wrap(Files.newInputStream(part.toPath()))) {
+                IOUtils.copyLarge(in, NullOutputStream.NULL_OUTPUT_STREAM, new byte[64 * 1024]);
+            }
+        }
+        if (hasher != null) {
+            this.digests = hasher;
+            try {
+                this.integrity.verify(hasher, out.getName());
+            } catch (IntegrityException e) {
+                Files.deleteIfExists(part.toPath());
+                checkpoint.discard();
+                throw e;
+            }
+        }
+        Files.move(part.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        checkpoint.discard();
         this.log(TerminalColors.GREEN.wrap("Successfully transferred ") + out.getAbsolutePath());
 
-        return true;
+        String etag = checkpoint.getEtag();
+        String lastModified = checkpoint.getLastModified();
+        // without validators a cached copy could never be revalidated, so it would only take up space
+        if (this.cacheable && (!this.revalidate || etag != null || lastModified != null)) {
+            cache.store(cacheKey, out, etag, lastModified, hasher == null ? null : hasher.sha256());
+        }
+    }
+
+    private boolean canSegment(ConductorHttpClient.Response response) {
+        return this.segments > 1
+                && response.getContentLength() >= this.segmentThreshold
+                && response.getCode() == HttpStatus.SC_OK
+                && "bytes".equalsIgnoreCase(response.getHeader("Accept-Ranges"));
+    }
+
+    /**
+     * Download a fresh copy into the `.part` file, the first segment is read from the response that was already
+     * received and the others are fetched concurrently with ranged requests.
+     * @param first response of the initial request
+     * @param checkpoint progress of this download
+     * @param part file to write, replaced if it exists
+     * @param hasher hashes the first segment as it is written, or null
+     * @return false if the server did not honor a ranged request, in which case the `.part` file is incomplete
+     */
+    private boolean transfer(ConductorHttpClient.Response first, DownloadCheckpoint checkpoint, File part,
+                             Integrity.Hasher hasher) throws Exception {
+        Files.deleteIfExists(part.toPath());
+        try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+            FileChannel channel = file.getChannel();
+            if (checkpoint.getLength() > 0) {
+                file.setLength(checkpoint.getLength());
+            }
+            checkpoint.save();
+
+            List<DownloadCheckpoint.Segment> segments = checkpoint.getSegments();
+            Cancellation cancellation = new Cancellation();
+            cancellation.register(first);
+            List<Future<?>> pending = this.fetchSegments(channel, checkpoint, segments.subList(1, segments.size()),
+                    cancellation);
+            try {
+                writeSegment(first.getBody(), channel, checkpoint, segments.get(0), hasher, cancellation);
+            } catch (IOException e) {
+                cancellation.fail(e);
+                if (cancellation.getFailure() == e) {
+                    awaitQuietly(pending);
+                    if (channel.isOpen()) {
+                        channel.force(false);
+                        checkpoint.save();
+                    }
+                    throw e;
+                }
+                // aborted by the segment that failed first, which is reported by await
+            } finally {
+                if (segments.size() > 1) {
+                    // the rest of the body is fetched by the other segments
+                    first.abort();
+                }
+                first.close();
+            }
+            return this.await(pending, cancellation, channel, checkpoint);
+        }
+    }
+
+    /**
+     * Fetch the remaining bytes of every unfinished segment of an interrupted download
+     * @return false if the server did not honor the ranged requests, because the resource changed or ranges are not
+     * supported anymore
+     */
+    private boolean resume(DownloadCheckpoint checkpoint, File part) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+            FileChannel channel = file.getChannel();
+            List<DownloadCheckpoint.Segment> unfinished = new ArrayList<>();
+            for (DownloadCheckpoint.Segment segment : checkpoint.getSegments()) {
+                if (!segment.isDone()) {
+                    unfinished.add(segment);
+                }
+            }
+            Cancellation cancellation = new Cancellation();
+            return this.await(this.fetchSegments(channel, checkpoint, unfinished, cancellation), cancellation,
+                    channel, checkpoint);
+        }
+    }
+
+    /**
+     * Fetch segments concurrently, the first of them to fail cancels the others
+     */
+    private List<Future<?>> fetchSegments(FileChannel channel, DownloadCheckpoint checkpoint,
+                                          List<DownloadCheckpoint.Segment> segments, Cancellation cancellation) {
+        List<Future<?>> pending = new ArrayList<>();
+        for (DownloadCheckpoint.Segment segment : segments) {
+            pending.add(SEGMENT_POOL.submit(() -> {
+                try {
+                    this.fetchSegment(channel, checkpoint, segment, cancellation);
+                } catch (Throwable t) {
+                    cancellation.fail(t);
+                    throw t;
+                }
+                return null;
+            }));
+        }
+        return pending;
+    }
+
+    /**
+     * Wait until segments ended, whether they failed or not
+     */
+    private static void awaitQuietly(List<Future<?>> pending) {
+        for (Future<?> segment : pending) {
+            try {
+                segment.get();
+            } catch (ExecutionException e) {
+                // reported by the segment that failed first
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wait for segments being fetched, keeping the checkpoint of whatever was received if any of them fail.
+     * @return false if a ranged request was not honored
+     */
+    private boolean await(List<Future<?>> pending, Cancellation cancellation, FileChannel channel,
+                          DownloadCheckpoint checkpoint) throws Exception {
+        try {
+            for (Future<?> segment : pending) {
+                segment.get();
+            }
+            return true;
+        } catch (ExecutionException e) {
+            // the others failed because the first to fail cancelled them
+            Throwable failure = cancellation.getFailure();
+            if (failure instanceof RangeNotHonoredException) {
+                this.logger.warn("Ranged download of " + this.url + " failed: " + failure.getMessage());
+                return false;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw failure instanceof Exception ? (Exception) failure : new IOException(failure);
+        } finally {
+            // nothing may write to the channel anymore when the checkpoint is saved
+            cancellation.cancel();
+            awaitQuietly(pending);
+            if (channel.isOpen() && !checkpoint.isComplete()) {
+                channel.force(false);
+                checkpoint.save();
+            }
+        }
+    }
+
+    private void fetchSegment(FileChannel channel, DownloadCheckpoint checkpoint, DownloadCheckpoint.Segment segment,
+                              Cancellation cancellation) throws IOException {
+        long from = segment.getPosition();
+        String range = from + "-" + (segment.getEnd() < 0 ? "" : String.valueOf(segment.getEnd()));
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Range", "bytes=" + range);
+        headers.put("If-Range", checkpoint.getValidator());
+        try (ConductorHttpClient.Response response = this.request(headers)) {
+            cancellation.register(response);
+            int code = response.getCode();
+            if (code != HttpStatus.SC_PARTIAL_CONTENT) {
+                throw new RangeNotHonoredException("Expected a partial response for bytes " + range + " but got " + code);
+            }
+            String contentRange = response.getHeader("Content-Range");
+            if (contentRange == null || !contentRange.startsWith("bytes " + range)) {
+                throw new RangeNotHonoredException("Unexpected Content-Range " + contentRange + " for bytes " + range);
+            }
+            writeSegment(response.getBody(), channel, checkpoint, segment, null, cancellation);
+        }
+    }
+
+    /**
+     * Write a response to its segment of the `.part` file, recording the progress in the checkpoint as it goes.
+     * @param hasher hashes what is written, or null
+     * @param cancellation stops writing once cancelled
+     */
+    private static void writeSegment(InputStream in, FileChannel channel, DownloadCheckpoint checkpoint,
+                                     DownloadCheckpoint.Segment segment, Integrity.Hasher hasher,
+                                     Cancellation cancellation) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long unsaved = 0;
+        try (InputStream input = in) {
+            while (segment.getEnd() < 0 || segment.getPosition() <= segment.getEnd()) {
+                long remaining = segment.getEnd() < 0 ? buffer.length : segment.getEnd() - segment.getPosition() + 1;
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (cancellation.isCancelled()) {
+                    throw new IOException("Cancelled, another segment failed");
+                }
+                if (read == -1) {
+                    if (segment.getEnd() < 0) {
+                        break;
+                    }
+                    throw new EOFException("Connection closed " + remaining + " bytes before the end of the segment");
+                }
+                if (hasher != null) {
+                    hasher.update(buffer, 0, read);
+                }
+                ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                long position = segment.getPosition();
+                while (chunk.hasRemaining()) {
+                    position += channel.write(chunk, position);
+                }
+                segment.advance(read);
+
+                unsaved += read;
+                if (unsaved >= CHECKPOINT_INTERVAL) {
+                    channel.force(false);
+                    checkpoint.save();
+                    unsaved = 0;
+                }
+            }
+        }
+        segment.finish();
+    }
+
+    /**
+     * Request the URL with the headers of this downloader
+     * @param extra additional headers for this request
+     */
+    private ConductorHttpClient.Response request(Map<String, String> extra) throws IOException {
+        Map<String, String> headers = new HashMap<>(this.headers);
+        headers.putAll(extra);
+        return ConductorHttpClient.get().get(this.url, headers);
     }
 
     private void log(String msg) {
         this.logger.info(msg);
     }
+
+    /**
+     * Body of a response, closing it before the end drops the connection instead of reading the rest of the body
+     */
+    private static class ResponseInputStream extends FilterInputStream {
+        private final ConductorHttpClient.Response response;
+        private boolean ended = false;
+
+        ResponseInputStream(ConductorHttpClient.Response response) throws IOException {
+            super(response.getBody());
+            this.response = response;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            this.ended |= read == -1;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            this.ended |= read == -1;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!this.ended) {
+                this.response.abort();
+            }
+            try {
+                super.close();
+            } finally {
+                this.response.close();
+            }
+        }
+    }
+
+    /**
+     * Cancels the segments of a download when one of them fails. Segments are not interrupted: a thread interrupted
+     * while writing closes the channel shared by every segment. Their responses are aborted instead, which ends
+     * reads waiting for the server, and they stop before writing what they read next.
+     */
+    private static class Cancellation {
+        private final Set<ConductorHttpClient.Response> responses = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled = false;
+        private volatile Throwable failure;
+
+        /**
+         * Abort a response when cancelled, right away if it already is
+         */
+        void register(ConductorHttpClient.Response response) {
+            this.responses.add(response);
+            if (this.cancelled) {
+                response.abort();
+            }
+        }
+
+        void cancel() {
+            this.cancelled = true;
+            this.responses.forEach(ConductorHttpClient.Response::abort);
+        }
+
+        /**
+         * Cancel, keeping what made the download fail when nothing failed before
+         */
+        synchronized void fail(Throwable failure) {
+            if (this.failure == null) {
+                this.failure = failure;
+            }
+            this.cancel();
+        }
+
+        boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        /**
+         * @return what the first segment to fail failed with
+         */
+        Throwable getFailure() {
+            return this.failure;
+        }
+    }
+
+    /**
+     * The server answered a ranged request with something else than the requested range
+     */
+    private static class RangeNotHonoredException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        RangeNotHonoredException(String message) {
+            super(message);
+        }
+    }
 }
@@ -0,0 +1,215 @@
+package tk.jasoryeh.conductor.http;
+
+import lombok.Getter;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.util.EntityUtils;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+import tk.jasoryeh.conductor.log.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * HTTP client shared by downloads, remote configurations and Jenkins.
+ *
+ * Connections are pooled and kept alive between requests to the same server, with a limit per server, and host names
+ * are resolved once per run.
+ */
+public class ConductorHttpClient {
+    private static final String USER_AGENT = "conductor, Java";
+
+    private static ConductorHttpClient instance;
+
+    public static synchronized ConductorHttpClient get() {
+        if (instance == null) {
+            instance = new ConductorHttpClient(LauncherConfiguration.get().getHttpConfig());
+        }
+        return instance;
+    }
+
+    private final Logger logger;
+    private final PoolingHttpClientConnectionManager connections;
+    private final RequestConfig requestConfig;
+    @Getter
+    private final CloseableHttpClient client;
+
+    public ConductorHttpClient(LauncherConfiguration.HttpConfig config) {
+        this.logger = new Logger(ConductorHttpClient.class.getSimpleName());
+        Registry<ConnectionSocketFactory> sockets = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                .build();
+        this.connections = new PoolingHttpClientConnectionManager(sockets, new CachingDnsResolver());
+        this.connections.setMaxTotal(config.getMaxConnections());
+        this.connections.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
+        this.requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.getConnectTimeout())
+                .setSocketTimeout(config.getReadTimeout())
+                .build();
+        this.client = this.builder().build();
+    }
+
+    /**
+     * Builder of clients sharing the connections of this client, for libraries that build their own client
+     * @return builder
+     */
+    public HttpClientBuilder builder() {
+        return HttpClientBuilder.create()
+                .useSystemProperties()
+                .setConnectionManager(this.connections)
+                .setDefaultRequestConfig(this.requestConfig)
+                .setUserAgent(USER_AGENT)
+                // ranges and lengths must refer to the content as it is stored
+                .disableContentCompression();
+    }
+
+    /**
+     * Send a GET request
+     * @param url URL, credentials in it are sent with basic authentication
+     * @param headers request headers
+     * @return response, to be closed
+     */
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        HttpGet request = new HttpGet(toURI(url));
+        String userInfo = new URL(url).getUserInfo();
+        if (userInfo != null) {
+            request.setHeader("Authorization",
+                    "Basic " + Base64.encodeBase64String(userInfo.getBytes(StandardCharsets.UTF_8)));
+        }
+        headers.forEach(request::setHeader);
+        return new Response(request, this.client.execute(request));
+    }
+
+    /**
+     * Retrieve the body of a URL as text
+     * @param url URL, credentials in it are sent with basic authentication
+     * @return body
+     */
+    public String getString(String url) throws IOException {
+        try (Response response = this.get(url, Collections.emptyMap())) {
+            if (response.getCode() / 100 != 2) {
+                this.logger.warn("[Download] Remote server at " + url + " returned a " + response.getCode() +
+                        " (" + response.response.getStatusLine().getReasonPhrase() + "), " +
+                        "we ignored this, but you should make sure this is correct.");
+            }
+            return response.getText();
+        }
+    }
+
+    private static URI toURI(String url) throws IOException {
+        URL parsed = new URL(url);
+        if (parsed.getUserInfo() != null) {
+            url = url.replaceFirst(Pattern.quote(parsed.getUserInfo() + "@"), "");
+            parsed = new URL(url);
+        }
+        try {
+            return URI.create(url);
+        } catch (IllegalArgumentException e) {
+            // not encoded, e.g. spaces in file names
+            try {
+                return new URI(parsed.getProtocol(), null, parsed.getHost(), parsed.getPort(),
+                        parsed.getPath(), parsed.getQuery(), parsed.getRef());
+            } catch (Exception invalid) {
+                throw new IOException("Invalid URL: " + url, invalid);
+            }
+        }
+    }
+
+    /**
+     * Response to a request, closing it returns its connection to the pool once the body was read
+     */
+    public static class Response implements Closeable {
+        private final HttpGet request;
+        private final CloseableHttpResponse response;
+
+        private Response(HttpGet request, CloseableHttpResponse response) {
+            this.request = request;
+            this.response = response;
+        }
+
+        public int getCode() {
+            return this.response.getStatusLine().getStatusCode();
+        }
+
+        public String getHeader(String name) {
+            Header header = this.response.getFirstHeader(name);
+            return header == null ? null : header.getValue();
+        }
+
+        /**
+         * @return length of the body, or -1 if unknown
+         */
+        public long getContentLength() {
+            HttpEntity entity = this.response.getEntity();
+            return entity == null ? -1 : entity.getContentLength();
+        }
+
+        public InputStream getBody() throws IOException {
+            HttpEntity entity = this.response.getEntity();
+            return entity == null ? new ByteArrayInputStream(new byte[0]) : entity.getContent();
+        }
+
+        /**
+         * @return body as UTF-8 text
+         */
+        public String getText() throws IOException {
+            HttpEntity entity = this.response.getEntity();
+            return entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Stop receiving the response, dropping its connection instead of reading the rest of the body
+         */
+        public void abort() {
+            this.request.abort();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.response.close();
+        }
+    }
+
+    /**
+     * Resolves every host name once, the addresses of the servers used are not expected to change during a run
+     */
+    private static class CachingDnsResolver implements DnsResolver {
+        private final Map<String, InetAddress[]> addresses = new ConcurrentHashMap<>();
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            InetAddress[] resolved = this.addresses.get(host);
+            if (resolved == null) {
+                resolved = SystemDefaultDnsResolver.INSTANCE.resolve(host);
+                this.addresses.put(host, resolved);
+            }
+            return resolved;
+        }
+    }
+}
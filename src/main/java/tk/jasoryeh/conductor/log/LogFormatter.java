@@ -0,0 +1,85 @@
+package tk.jasoryeh.conductor.log;
+
+import tk.jasoryeh.conductor.util.TerminalColors;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats log messages, only used by the writer thread
+ */
+class LogFormatter {
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-M-d | HH:mm:ss");
+    private static final char ESCAPE = '\033';
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    // the date changes once a second, not once a message
+    private long second = -1;
+    private String date;
+
+    void format(StringBuilder out, LogWriter.Entry entry) {
+        boolean ansi = Logger.isAnsi();
+        if (ansi) {
+            out.append(TerminalColors.RESET).append(TerminalColors.WHITE);
+        }
+        out.append('[');
+        this.appendDate(out, entry.time);
+        out.append("] ");
+        out.append(ansi ? entry.level.ansiPrefix : entry.level.plainPrefix);
+        String name = entry.logger.getName(ansi);
+        if (!name.isEmpty()) {
+            out.append(' ').append(name);
+        }
+        out.append(' ');
+        // a supplier may have returned null
+        String message = String.valueOf(entry.message);
+        if (ansi) {
+            out.append(TerminalColors.RESET).append(message).append(TerminalColors.RESET);
+        } else {
+            appendPlain(out, message);
+        }
+    }
+
+    private void appendDate(StringBuilder out, long time) {
+        long second = time / 1000;
+        if (second != this.second) {
+            this.second = second;
+            this.date = DATE.format(ZonedDateTime.ofInstant(Instant.ofEpochSecond(second), this.zone));
+        }
+        long hundredths = (time % 1000) / 10;
+        out.append(this.date).append('.');
+        if (hundredths < 10) {
+            out.append('0');
+        }
+        out.append(hundredths).append(" | ").append(this.zone.getId());
+    }
+
+    /**
+     * Append a message without its color codes
+     */
+    private static void appendPlain(StringBuilder out, String message) {
+        int escape = message.indexOf(ESCAPE);
+        if (escape < 0) {
+            out.append(message);
+            return;
+        }
+        int copied = 0;
+        while (escape >= 0) {
+            out.append(message, copied, escape);
+            int end = escape + 1;
+            if (end < message.length() && message.charAt(end) == '[') {
+                end++;
+                // parameters, then the final letter of the sequence
+                while (end < message.length() && !Character.isLetter(message.charAt(end))) {
+                    end++;
+                }
+                end = Math.min(end + 1, message.length());
+            }
+            copied = end;
+            escape = message.indexOf(ESCAPE, copied);
+        }
+        out.append(message, copied, message.length());
+    }
+}
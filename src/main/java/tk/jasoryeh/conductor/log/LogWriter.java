@@ -0,0 +1,163 @@
+package tk.jasoryeh.conductor.log;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes log messages from a single thread.
+ *
+ * Loggers put their messages in a bounded lock-free ring buffer, the writer thread formats and prints them in batches.
+ * A logger waits for space when the buffer is full, messages are never dropped. Messages still in the buffer are
+ * written when the JVM shuts down.
+ */
+class LogWriter {
+    private static final int CAPACITY = 8192;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long FLUSH_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private static LogWriter instance;
+
+    static synchronized LogWriter get() {
+        if (instance == null) {
+            instance = new LogWriter(System.out);
+        }
+        return instance;
+    }
+
+    /**
+     * A message waiting to be written
+     */
+    static class Entry {
+        final long time;
+        final Logger.Level level;
+        final Logger logger;
+        final String message;
+
+        Entry(long time, Logger.Level level, Logger logger, String message) {
+            this.time = time;
+            this.level = level;
+            this.logger = logger;
+            this.message = message;
+        }
+    }
+
+    private final PrintStream out;
+    private final int mask = CAPACITY - 1;
+    private final AtomicReferenceArray<Entry> slots = new AtomicReferenceArray<>(CAPACITY);
+    // sequence of each slot: equal to the position when free to write, position + 1 once written
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean idle = false;
+    // only used by the writer thread
+    private long head = 0;
+
+    private LogWriter(PrintStream out) {
+        this.out = out;
+        for (int i = 0; i < CAPACITY; i++) {
+            this.sequences.set(i, i);
+        }
+        this.thread = new Thread(this::run, "conductor-log");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "conductor-log-flush"));
+    }
+
+    void write(Entry entry) {
+        while (!this.offer(entry)) {
+            // full, let the writer catch up
+            LockSupport.unpark(this.thread);
+            Thread.yield();
+        }
+        if (this.idle) {
+            LockSupport.unpark(this.thread);
+        }
+    }
+
+    /**
+     * Wait until every message logged so far was written
+     */
+    void flush() {
+        if (Thread.currentThread() == this.thread) {
+            return;
+        }
+        long target = this.tail.get();
+        long deadline = System.nanoTime() + FLUSH_TIMEOUT_NANOS;
+        while (this.written.get() < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(this.thread);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    private boolean offer(Entry entry) {
+        long position = this.tail.get();
+        while (true) {
+            int index = (int) (position & this.mask);
+            long difference = this.sequences.get(index) - position;
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.slots.set(index, entry);
+                    this.sequences.set(index, position + 1);
+                    return true;
+                }
+                position = this.tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = this.tail.get();
+            }
+        }
+    }
+
+    private Entry poll() {
+        int index = (int) (this.head & this.mask);
+        if (this.sequences.get(index) != this.head + 1) {
+            return null;
+        }
+        Entry entry = this.slots.get(index);
+        this.slots.set(index, null);
+        this.sequences.set(index, this.head + CAPACITY);
+        this.head++;
+        return entry;
+    }
+
+    private void run() {
+        LogFormatter formatter = new LogFormatter();
+        StringBuilder batch = new StringBuilder();
+        while (true) {
+            int count = 0;
+            Entry entry;
+            while (count < CAPACITY && (entry = this.poll()) != null) {
+                int start = batch.length();
+                try {
+                    formatter.format(batch, entry);
+                } catch (RuntimeException e) {
+                    // the writer thread never dies, loggers would wait for space forever
+                    batch.setLength(start);
+                    batch.append('[').append(entry.level).append("] ").append(entry.message);
+                }
+                batch.append(System.lineSeparator());
+                count++;
+            }
+            if (count > 0) {
+                this.out.print(batch);
+                this.out.flush();
+                batch.setLength(0);
+                this.written.addAndGet(count);
+                continue;
+            }
+
+            this.idle = true;
+            // a message may have arrived before idle was set
+            if (this.written.get() == this.tail.get()) {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+            this.idle = false;
+        }
+    }
+}
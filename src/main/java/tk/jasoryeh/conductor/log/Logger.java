@@ -2,8 +2,8 @@ package tk.jasoryeh.conductor.log;
 
 import tk.jasoryeh.conductor.util.TerminalColors;
 
-import java.time.ZonedDateTime;
 import java.util.StringJoiner;
+import java.util.function.Supplier;
 
 public class Logger {
     /**
@@ -12,6 +12,62 @@ public class Logger {
     private static Logger instance;
     private Logger parent = null;
     private String name;
+    // names including the names of the parents, they never change
+    private final String ansiName;
+    private final String plainName;
+
+    /**
+     * Levels of messages, from the least to the most important
+     */
+    public enum Level {
+        DEBUG(TerminalColors.CYAN_BOLD),
+        INFO(TerminalColors.GREEN),
+        WARN(TerminalColors.YELLOW),
+        ERROR(TerminalColors.RED);
+
+        final String ansiPrefix;
+        final String plainPrefix;
+
+        Level(TerminalColors color) {
+            this.ansiPrefix = TerminalColors.RESET + "" + TerminalColors.WHITE + "[" + color + this.name() + TerminalColors.WHITE + "]" + TerminalColors.RESET;
+            this.plainPrefix = "[" + this.name() + "]";
+        }
+    }
+
+    /**
+     * Formats of the output, auto uses colors when attached to a terminal
+     */
+    public enum Format {
+        AUTO, PLAIN, ANSI
+    }
+
+    private static volatile Level level = Level.INFO;
+    private static volatile boolean ansi = System.console() != null;
+
+    /**
+     * Set which messages are written and how
+     * @param level least important level written
+     * @param format format of the output
+     */
+    public static void configure(Level level, Format format) {
+        Logger.level = level;
+        Logger.ansi = format == Format.ANSI || (format == Format.AUTO && System.console() != null);
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(Logger.level) >= 0;
+    }
+
+    static boolean isAnsi() {
+        return ansi;
+    }
+
+    /**
+     * Wait until every message logged so far was written
+     */
+    public static void flush() {
+        LogWriter.get().flush();
+    }
 
     public static Logger getLogger() {
         instance = (instance == null) ? new Logger() : instance;
@@ -32,6 +88,8 @@ public class Logger {
     public Logger(Logger parent, String name) {
         this.parent = parent;
         this.name = name;
+        this.ansiName = this.name == null ? EMPTY : this.buildName(true);
+        this.plainName = this.name == null ? EMPTY : this.buildName(false);
     }
 
     public Logger child(String name) {
@@ -40,103 +98,95 @@ public class Logger {
 
     public final static String EMPTY = "";
 
-    /**
-     * Prefixes for the error messages
-     */
-    private final static String INFOPREFIX = TerminalColors.RESET + "" + TerminalColors.WHITE + "[" + TerminalColors.GREEN + "INFO" + TerminalColors.WHITE + "]" + TerminalColors.RESET;
-    private final static String WARNPREFIX = TerminalColors.RESET + "" + TerminalColors.WHITE + "[" + TerminalColors.YELLOW + "WARN" + TerminalColors.WHITE + "]" + TerminalColors.RESET;
-    private final static String ERRORPREFIX = TerminalColors.RESET + "" + TerminalColors.WHITE + "[" + TerminalColors.RED + "ERROR" + TerminalColors.WHITE + "]" + TerminalColors.RESET;
-    private final static String DEBUGPREFIX = TerminalColors.RESET + "" + TerminalColors.WHITE + "[" + TerminalColors.CYAN_BOLD + "DEBUG" + TerminalColors.WHITE + "]" + TerminalColors.RESET;
-
     /**
      * All the logger methods
      */
 
     public void info(Object... objects) {
-        say(getMessage(INFOPREFIX, objects));
+        this.log(Level.INFO, objects);
     }
 
     public void warn(Object... objects) {
-        say(getMessage(WARNPREFIX, objects));
+        this.log(Level.WARN, objects);
     }
 
     public void error(Object... objects) {
-        say(getMessage(ERRORPREFIX, objects));
+        this.log(Level.ERROR, objects);
     }
 
     public void debug(Object... objects) {
-        say(getMessage(DEBUGPREFIX, objects));
+        this.log(Level.DEBUG, objects);
     }
 
     /**
-     * Returns a full date and time zone string for use in the log message
-     * @return String with brackets to be used in the message
+     * Messages built only if they are written
      */
-    private static String logDate() {
-        ZonedDateTime zdt = ZonedDateTime.now();
 
-        // Perform adjustments here.
-        int year = zdt.getYear();
-        int month = zdt.getMonthValue();
-        int day = zdt.getDayOfMonth();
+    public void info(Supplier<String> message) {
+        this.log(Level.INFO, message);
+    }
 
-        String hour = zdt.getHour() + ""; hour = (hour.length() == 1) ? (0 + hour) : (hour);
-        String min = zdt.getMinute() + ""; min = (min.length() == 1) ? (0 + min) : (min);
-        String sec = zdt.getSecond() + ""; sec = (sec.length() == 1) ? (0 + sec) : (sec);
+    public void warn(Supplier<String> message) {
+        this.log(Level.WARN, message);
+    }
 
-        String ns = zdt.getNano() + ""; ns = (ns.length() != 3) ? (ns.length() > 3 ? ns.substring(0, 2) : (ns.length() == 2 ? "0" : "00")) : ns;
+    public void error(Supplier<String> message) {
+        this.log(Level.ERROR, message);
+    }
 
-        String tz = zdt.getZone().getId();
+    public void debug(Supplier<String> message) {
+        this.log(Level.DEBUG, message);
+    }
 
-        // Actually shown.
-        String date = year + "-" + month + "-" + day + " | "
-                + hour + ":" + min + ":" + sec + "." + ns + " | " + tz;
-        return "[" + date + "]";
+    public void log(Level level, Object... objects) {
+        if (isEnabled(level)) {
+            this.say(level, getMessage(objects));
+        }
     }
 
+    public void log(Level level, Supplier<String> message) {
+        if (isEnabled(level)) {
+            this.say(level, message.get());
+        }
+    }
 
     /**
-     * Quick S.O.P.
-     * @param say Thing to print out
+     * Queue a message, it is written by the log writer thread
+     * @param level level of the message
+     * @param message Thing to print out
      */
-    protected static void say(Object say) {
-        System.out.println(say);
+    protected void say(Level level, String message) {
+        LogWriter.get().write(new LogWriter.Entry(System.currentTimeMillis(), level, this, message));
     }
 
-    protected String getName() {
-        String build = this.name == null ? "" : ("[" + TerminalColors.WHITE_UNDERLINED + this.name + TerminalColors.RESET + "]");
+    protected String getName(boolean ansi) {
+        return ansi ? this.ansiName : this.plainName;
+    }
+
+    private String buildName(boolean ansi) {
+        String build = this.name == null ? "" : (ansi
+                ? ("[" + TerminalColors.WHITE_UNDERLINED + this.name + TerminalColors.RESET + "]")
+                : ("[" + this.name + "]"));
         if (this.parent != null) {
-            build = this.parent.getName() + (build.length() == 0 ? "" : (" " + build));
+            String parentName = this.parent.name == null ? this.parent.buildName(ansi) : this.parent.getName(ansi);
+            build = parentName + (build.length() == 0 ? "" : (" " + build));
         }
         return build;
     }
 
     /**
-     * Generate the message with specified prefix and messages
-     * @param prefix Prefix to start with
+     * Generate the message from the specified things to say
      * @param objects Things to say in the message returned
      * @return Compiled message
      */
-    protected String getMessage(String prefix, Object... objects) {
+    protected static String getMessage(Object... objects) {
+        if (objects.length == 1) {
+            return String.valueOf(objects[0]);
+        }
         StringJoiner joiner = new StringJoiner(" ");
         for(Object o : objects) {
             joiner.add(String.valueOf(o));
         }
-        StringBuilder logMessage = new StringBuilder();
-        logMessage.append(TerminalColors.RESET); // reset the color for this message
-        logMessage.append(TerminalColors.WHITE); // set to white
-        logMessage.append(logDate()); // start with date
-        logMessage.append(" ");
-        logMessage.append(prefix);
-        if (this.name != null) {
-            logMessage.append(" ");
-            logMessage.append(this.getName());
-        }
-        logMessage.append(" ");
-        logMessage.append(TerminalColors.RESET); // reset colors again
-        logMessage.append(joiner.toString()); // actual message
-        logMessage.append(TerminalColors.RESET); // reset trailing colors
-
-        return logMessage.toString();
+        return joiner.toString();
     }
 }
@@ -0,0 +1,168 @@
+package tk.jasoryeh.conductor.metrics;
+
+import tk.jasoryeh.conductor.V2FileSystemObject;
+import tk.jasoryeh.conductor.V2FolderObject;
+import tk.jasoryeh.conductor.plugins.Plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * What the run waited on: every phase, and for the phases run over the objects the chain of objects that ended last,
+ * down to the plugin that held up the last one. A folder ends once all its children ended, so that chain is what
+ * the phase could not end before.
+ */
+class CriticalPath {
+    private final RunMetrics metrics;
+    private final List<V2FileSystemObject> layout;
+
+    CriticalPath(RunMetrics metrics, List<V2FileSystemObject> layout) {
+        this.metrics = metrics;
+        this.layout = layout;
+    }
+
+    /**
+     * @return lines of the summary
+     */
+    List<String> summarize() {
+        Map<String, Timing> phases = this.metrics.getPhases();
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        for (Timing phase : phases.values()) {
+            start = Math.min(start, phase.getStart());
+            end = Math.max(end, phase.getEnd());
+        }
+        List<String> lines = new ArrayList<>();
+        if (phases.isEmpty()) {
+            return lines;
+        }
+        lines.add(String.format("Critical path, %.1f ms:", (end - start) / 1e6));
+        for (Map.Entry<String, Timing> phase : phases.entrySet()) {
+            String line = String.format("  %-13s %9.1f ms", phase.getKey(), phase.getValue().getMillis());
+            switch (phase.getKey()) {
+                case "fetchIncludes":
+                    lines.add(line + this.slowestInclude());
+                    break;
+                case "prepare":
+                    this.chain(lines, line, NodeMetrics::getPrepare, PluginMetrics::getPrepare);
+                    break;
+                case "delete":
+                    this.chain(lines, line, NodeMetrics::getDelete, null);
+                    break;
+                case "apply":
+                    this.chain(lines, line, NodeMetrics::getApply, PluginMetrics::getExecute);
+                    break;
+                default:
+                    lines.add(line);
+            }
+        }
+        int overlap = this.downloadOverlap();
+        if (overlap > 0) {
+            lines.add("  at most " + overlap + " downloads ran at once");
+        }
+        return lines;
+    }
+
+    private String slowestInclude() {
+        RunMetrics.Include slowest = null;
+        for (RunMetrics.Include include : this.metrics.getIncludes()) {
+            if (slowest == null || include.getTiming().getNanos() > slowest.getTiming().getNanos()) {
+                slowest = include;
+            }
+        }
+        return slowest == null ? "" : String.format(", slowest %s %.1f ms",
+                slowest.getLocation(), slowest.getTiming().getMillis());
+    }
+
+    private void chain(List<String> lines, String line, Function<NodeMetrics, Timing> phase,
+                       Function<PluginMetrics, Timing> pluginPhase) {
+        List<V2FileSystemObject> chain = new ArrayList<>();
+        List<V2FileSystemObject> candidates = this.layout;
+        while (candidates != null) {
+            V2FileSystemObject last = null;
+            for (V2FileSystemObject candidate : candidates) {
+                Timing timing = phase.apply(candidate.getMetrics());
+                if (timing != null && (last == null
+                        || timing.getEnd() > phase.apply(last.getMetrics()).getEnd())) {
+                    last = candidate;
+                }
+            }
+            if (last == null) {
+                break;
+            }
+            chain.add(last);
+            candidates = last instanceof V2FolderObject ? ((V2FolderObject) last).children : null;
+        }
+        if (chain.isEmpty()) {
+            lines.add(line);
+            return;
+        }
+        V2FileSystemObject leaf = chain.get(chain.size() - 1);
+        lines.add(line + ", ended by " + leaf.getPath());
+        for (V2FileSystemObject object : chain) {
+            Timing timing = phase.apply(object.getMetrics());
+            lines.add(String.format("    %-40s %9.1f ms on %s", object.getPath(), timing.getMillis(),
+                    timing.getThread() == null ? "?" : timing.getThread().getName()));
+        }
+        if (pluginPhase == null) {
+            return;
+        }
+        Plugin slowest = null;
+        for (Plugin plugin : leaf.getPlugins()) {
+            Timing timing = pluginPhase.apply(plugin.getMetrics());
+            if (timing != null && (slowest == null
+                    || timing.getNanos() > pluginPhase.apply(slowest.getMetrics()).getNanos())) {
+                slowest = plugin;
+            }
+        }
+        if (slowest == null) {
+            return;
+        }
+        PluginMetrics metrics = slowest.getMetrics();
+        Timing timing = pluginPhase.apply(metrics);
+        String held = String.format("      %s %.1f ms", slowest.getClass().getSimpleName(), timing.getMillis());
+        if (!metrics.getDownloads().isEmpty()) {
+            // the plugin waits on the download pool, for a slot and then for the download itself
+            double downloading = metrics.getDownloadNanos() / 1e6;
+            held += String.format(": %.1f ms waiting, %.1f ms downloading %d KB from %s",
+                    Math.max(0, timing.getMillis() - downloading), downloading, metrics.getBytes() / 1024,
+                    metrics.getHost());
+        } else if (metrics.isCached()) {
+            held += ", restored from the artifact cache";
+        }
+        lines.add(held);
+    }
+
+    /**
+     * @return most downloads running at the same time
+     */
+    private int downloadOverlap() {
+        // +1 when a download starts and -1 when one ends, a download starting as another ends cancels out
+        TreeMap<Long, Integer> changes = new TreeMap<>();
+        this.downloads(this.layout, changes);
+        int running = 0;
+        int most = 0;
+        for (int change : changes.values()) {
+            running += change;
+            most = Math.max(most, running);
+        }
+        return most;
+    }
+
+    private void downloads(List<V2FileSystemObject> objects, TreeMap<Long, Integer> changes) {
+        for (V2FileSystemObject object : objects) {
+            for (Plugin plugin : object.getPlugins()) {
+                for (PluginMetrics.Download download : plugin.getMetrics().getDownloads()) {
+                    changes.merge(download.getTiming().getStart(), 1, Integer::sum);
+                    changes.merge(download.getTiming().getEnd(), -1, Integer::sum);
+                }
+            }
+            if (object instanceof V2FolderObject) {
+                this.downloads(((V2FolderObject) object).children, changes);
+            }
+        }
+    }
+}
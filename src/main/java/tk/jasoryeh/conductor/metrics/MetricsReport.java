@@ -0,0 +1,285 @@
+package tk.jasoryeh.conductor.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import tk.jasoryeh.conductor.V2FileSystemObject;
+import tk.jasoryeh.conductor.V2FolderObject;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+import tk.jasoryeh.conductor.plugins.Plugin;
+
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Writes the metrics of a run as JSON, and as OpenMetrics text to be picked up by a metrics collector.
+ */
+class MetricsReport {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final RunMetrics metrics;
+    private final List<V2FileSystemObject> objects = new ArrayList<>();
+    private final Throwable failure;
+
+    MetricsReport(RunMetrics metrics, List<V2FileSystemObject> layout, Throwable failure) {
+        this.metrics = metrics;
+        this.failure = failure;
+        this.flatten(layout);
+    }
+
+    private void flatten(List<V2FileSystemObject> objects) {
+        for (V2FileSystemObject object : objects) {
+            this.objects.add(object);
+            if (object instanceof V2FolderObject) {
+                this.flatten(((V2FolderObject) object).children);
+            }
+        }
+    }
+
+    /**
+     * @return milliseconds since the run started
+     */
+    private double offset(long nanos) {
+        return (nanos - this.metrics.getStartedNanos()) / 1e6;
+    }
+
+    /**
+     * @return seconds since the epoch
+     */
+    private double timestamp(long nanos) {
+        return this.metrics.getStartedMillis() / 1e3 + (nanos - this.metrics.getStartedNanos()) / 1e9;
+    }
+
+    private static void time(JsonObject json, String name, Timing timing) {
+        if (timing != null) {
+            json.addProperty(name + "Millis", timing.getMillis());
+        }
+    }
+
+    void writeJson(File file) throws Exception {
+        JsonObject report = new JsonObject();
+        report.addProperty("name", LauncherConfiguration.get().getName());
+        report.addProperty("started", this.metrics.getStartedMillis());
+        report.addProperty("success", this.failure == null);
+        if (this.failure != null) {
+            report.addProperty("error", String.valueOf(this.failure));
+        }
+
+        JsonObject phases = new JsonObject();
+        for (Map.Entry<String, Timing> phase : this.metrics.getPhases().entrySet()) {
+            phases.addProperty(phase.getKey(), phase.getValue().getMillis());
+        }
+        report.add("phases", phases);
+
+        JsonArray includes = new JsonArray();
+        for (RunMetrics.Include include : this.metrics.getIncludes()) {
+            JsonObject json = new JsonObject();
+            json.addProperty("location", include.getLocation());
+            json.addProperty("startMillis", this.offset(include.getTiming().getStart()));
+            json.addProperty("millis", include.getTiming().getMillis());
+            json.addProperty("bytes", include.getBytes());
+            includes.add(json);
+        }
+        report.add("includes", includes);
+
+        long bytes = 0;
+        int retries = 0;
+        JsonArray objects = new JsonArray();
+        for (V2FileSystemObject object : this.objects) {
+            JsonObject json = new JsonObject();
+            json.addProperty("path", object.getPath());
+            json.addProperty("type", object.getDefinedType().toLowerCase());
+            json.addProperty("unchanged", object.isUnchanged());
+            NodeMetrics node = object.getMetrics();
+            time(json, "prepare", node.getPrepare());
+            time(json, "delete", node.getDelete());
+            time(json, "apply", node.getApply());
+            JsonArray plugins = new JsonArray();
+            for (Plugin plugin : object.getPlugins()) {
+                PluginMetrics pluginMetrics = plugin.getMetrics();
+                JsonObject pluginJson = new JsonObject();
+                pluginJson.addProperty("plugin", plugin.getClass().getSimpleName());
+                if (pluginMetrics.getHost() != null) {
+                    pluginJson.addProperty("host", pluginMetrics.getHost());
+                }
+                time(pluginJson, "prepare", pluginMetrics.getPrepare());
+                time(pluginJson, "execute", pluginMetrics.getExecute());
+                pluginJson.addProperty("bytes", pluginMetrics.getBytes());
+                pluginJson.addProperty("bytesPerSecond", pluginMetrics.getThroughput());
+                pluginJson.addProperty("retries", pluginMetrics.getRetries());
+                pluginJson.addProperty("cached", pluginMetrics.isCached());
+                plugins.add(pluginJson);
+                bytes += pluginMetrics.getBytes();
+                retries += pluginMetrics.getRetries();
+            }
+            json.add("plugins", plugins);
+            objects.add(json);
+        }
+        JsonObject downloads = new JsonObject();
+        downloads.addProperty("bytes", bytes);
+        downloads.addProperty("retries", retries);
+        report.add("downloads", downloads);
+        report.add("objects", objects);
+
+        JsonArray queues = new JsonArray();
+        for (RunMetrics.QueueSample sample : this.metrics.getSamples()) {
+            JsonObject json = new JsonObject();
+            json.addProperty("timeMillis", this.offset(sample.getTime()));
+            json.addProperty("prepareQueued", sample.getPrepareQueued());
+            json.addProperty("prepareActive", sample.getPrepareActive());
+            json.addProperty("applyQueued", sample.getApplyQueued());
+            json.addProperty("applyActive", sample.getApplyActive());
+            json.addProperty("downloadsQueued", sample.getDownloadsQueued());
+            json.addProperty("downloadsActive", sample.getDownloadsActive());
+            queues.add(json);
+        }
+        report.add("queues", queues);
+
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(report, writer);
+        }
+    }
+
+    void writeOpenMetrics(File file) throws Exception {
+        StringBuilder out = new StringBuilder();
+
+        family(out, "conductor_run", "info", null, "A run of conductor.");
+        out.append("conductor_run_info").append(labels("name", LauncherConfiguration.get().getName(),
+                "result", this.failure == null ? "success" : "failure")).append(" 1\n");
+
+        family(out, "conductor_phase_seconds", "gauge", "seconds", "Wall time of each phase of the run.");
+        for (Map.Entry<String, Timing> phase : this.metrics.getPhases().entrySet()) {
+            sample(out, "conductor_phase_seconds", labels("phase", phase.getKey()), phase.getValue().getNanos() / 1e9);
+        }
+
+        List<RunMetrics.Include> includes = this.metrics.getIncludes();
+        family(out, "conductor_include_seconds", "gauge", "seconds", "Time to fetch each include.");
+        for (RunMetrics.Include include : includes) {
+            sample(out, "conductor_include_seconds", labels("location", include.getLocation()),
+                    include.getTiming().getNanos() / 1e9);
+        }
+        family(out, "conductor_include_bytes", "gauge", "bytes", "Size of each include.");
+        for (RunMetrics.Include include : includes) {
+            sample(out, "conductor_include_bytes", labels("location", include.getLocation()), include.getBytes());
+        }
+
+        family(out, "conductor_object_seconds", "gauge", "seconds",
+                "Time to prepare, delete and apply each object, those of folders include their children.");
+        for (V2FileSystemObject object : this.objects) {
+            String type = object.getDefinedType().toLowerCase();
+            NodeMetrics node = object.getMetrics();
+            timing(out, "conductor_object_seconds", node.getPrepare(), "path", object.getPath(), "type", type, "phase", "prepare");
+            timing(out, "conductor_object_seconds", node.getDelete(), "path", object.getPath(), "type", type, "phase", "delete");
+            timing(out, "conductor_object_seconds", node.getApply(), "path", object.getPath(), "type", type, "phase", "apply");
+        }
+
+        family(out, "conductor_plugin_seconds", "gauge", "seconds", "Time to prepare and execute each plugin.");
+        for (V2FileSystemObject object : this.objects) {
+            for (Plugin plugin : object.getPlugins()) {
+                String name = plugin.getClass().getSimpleName();
+                PluginMetrics metrics = plugin.getMetrics();
+                timing(out, "conductor_plugin_seconds", metrics.getPrepare(), "path", object.getPath(), "plugin", name, "phase", "prepare");
+                timing(out, "conductor_plugin_seconds", metrics.getExecute(), "path", object.getPath(), "plugin", name, "phase", "execute");
+            }
+        }
+
+        family(out, "conductor_plugin_download_bytes", "counter", "bytes", "Bytes downloaded by each plugin.");
+        this.downloads(out, "conductor_plugin_download_bytes_total", metrics -> (double) metrics.getBytes());
+        family(out, "conductor_plugin_download_bytes_per_second", "gauge", "bytes_per_second",
+                "Throughput of the downloads of each plugin.");
+        this.downloads(out, "conductor_plugin_download_bytes_per_second", PluginMetrics::getThroughput);
+        family(out, "conductor_plugin_download_retries", "counter", null,
+                "Downloads of each plugin retried because they did not have the expected digests.");
+        this.downloads(out, "conductor_plugin_download_retries_total", metrics -> (double) metrics.getRetries());
+
+        List<RunMetrics.QueueSample> samples = this.metrics.getSamples();
+        family(out, "conductor_pool_queued", "gauge", null, "Tasks waiting in each pool over time.");
+        for (RunMetrics.QueueSample sample : samples) {
+            double time = this.timestamp(sample.getTime());
+            sample(out, "conductor_pool_queued", labels("pool", "prepare"), sample.getPrepareQueued(), time);
+            sample(out, "conductor_pool_queued", labels("pool", "apply"), sample.getApplyQueued(), time);
+            sample(out, "conductor_pool_queued", labels("pool", "download"), sample.getDownloadsQueued(), time);
+        }
+        family(out, "conductor_pool_active", "gauge", null, "Tasks run by each pool over time.");
+        for (RunMetrics.QueueSample sample : samples) {
+            double time = this.timestamp(sample.getTime());
+            sample(out, "conductor_pool_active", labels("pool", "prepare"), sample.getPrepareActive(), time);
+            sample(out, "conductor_pool_active", labels("pool", "apply"), sample.getApplyActive(), time);
+            sample(out, "conductor_pool_active", labels("pool", "download"), sample.getDownloadsActive(), time);
+        }
+        out.append("# EOF\n");
+
+        Files.write(file.toPath(), out.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Samples of the plugins that downloaded something
+     */
+    private void downloads(StringBuilder out, String name, Function<PluginMetrics, Double> value) {
+        for (V2FileSystemObject object : this.objects) {
+            for (Plugin plugin : object.getPlugins()) {
+                PluginMetrics metrics = plugin.getMetrics();
+                if (metrics.getHost() == null || metrics.getPrepare() == null) {
+                    continue;
+                }
+                sample(out, name, labels("path", object.getPath(), "plugin", plugin.getClass().getSimpleName(),
+                        "host", metrics.getHost()), value.apply(metrics));
+            }
+        }
+    }
+
+    private static void family(StringBuilder out, String name, String type, String unit, String help) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        if (unit != null) {
+            out.append("# UNIT ").append(name).append(' ').append(unit).append('\n');
+        }
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private static void timing(StringBuilder out, String name, Timing timing, String... labels) {
+        if (timing != null) {
+            sample(out, name, labels(labels), timing.getNanos() / 1e9);
+        }
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ').append(number(value)).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value, double timestamp) {
+        out.append(name).append(labels).append(' ').append(number(value)).append(' ')
+                .append(String.format(Locale.ROOT, "%.3f", timestamp)).append('\n');
+    }
+
+    /**
+     * Counts without a fraction
+     */
+    private static String number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    /**
+     * @param labels names and values, one after the other
+     */
+    private static String labels(String... labels) {
+        StringBuilder out = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"").append(labels[i + 1]
+                    .replace("\\", "\\\\")
+                    .replace("\"", "\\\"")
+                    .replace("\n", "\\n")).append('"');
+        }
+        return out.append('}').toString();
+    }
+}
@@ -0,0 +1,28 @@
+package tk.jasoryeh.conductor.metrics;
+
+import lombok.Getter;
+
+/**
+ * Time a filesystem object took to be prepared, deleted and applied. Those of a folder include its children.
+ * Phases an object skipped, e.g. because it is unchanged, are null.
+ */
+public class NodeMetrics {
+    @Getter
+    private volatile Timing prepare;
+    @Getter
+    private volatile Timing delete;
+    @Getter
+    private volatile Timing apply;
+
+    public void prepared(long start) {
+        this.prepare = Timing.since(start);
+    }
+
+    public void deleted(long start) {
+        this.delete = Timing.since(start);
+    }
+
+    public void applied(long start) {
+        this.apply = Timing.since(start);
+    }
+}
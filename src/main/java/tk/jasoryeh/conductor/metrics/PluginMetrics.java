@@ -0,0 +1,108 @@
+package tk.jasoryeh.conductor.metrics;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time a plugin took to prepare and execute, and what it downloaded.
+ */
+public class PluginMetrics {
+    @Getter
+    private volatile Timing prepare;
+    @Getter
+    private volatile Timing execute;
+    /**
+     * Host downloaded from, null if nothing is downloaded
+     */
+    @Getter
+    @Setter
+    private volatile String host;
+    /**
+     * Whether the download was restored from the artifact cache instead
+     */
+    @Getter
+    private volatile boolean cached;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong downloadNanos = new AtomicLong();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final List<Download> downloads = new ArrayList<>();
+
+    public void prepared(long start) {
+        this.prepare = Timing.since(start);
+    }
+
+    public void executed(long start) {
+        this.execute = Timing.since(start);
+    }
+
+    /**
+     * Record a download
+     * @param bytes bytes received
+     * @param start {@link System#nanoTime()} when the download started
+     */
+    public void transferred(long bytes, long start) {
+        this.bytes.addAndGet(bytes);
+        Download download = new Download(Timing.since(start), bytes);
+        this.downloadNanos.addAndGet(download.timing.getNanos());
+        synchronized (this.downloads) {
+            this.downloads.add(download);
+        }
+    }
+
+    public void restored() {
+        this.cached = true;
+    }
+
+    public void retried() {
+        this.retries.incrementAndGet();
+    }
+
+    public long getBytes() {
+        return this.bytes.get();
+    }
+
+    public int getRetries() {
+        return this.retries.get();
+    }
+
+    /**
+     * @return every download, with the thread it ran on
+     */
+    public List<Download> getDownloads() {
+        synchronized (this.downloads) {
+            return new ArrayList<>(this.downloads);
+        }
+    }
+
+    /**
+     * @return nanoseconds spent downloading
+     */
+    public long getDownloadNanos() {
+        return this.downloadNanos.get();
+    }
+
+    /**
+     * @return bytes per second while downloading, 0 if nothing was downloaded
+     */
+    public double getThroughput() {
+        long nanos = this.downloadNanos.get();
+        return nanos == 0 ? 0 : this.bytes.get() / (nanos / 1e9);
+    }
+
+    public static class Download {
+        @Getter
+        private final Timing timing;
+        @Getter
+        private final long bytes;
+
+        Download(Timing timing, long bytes) {
+            this.timing = timing;
+            this.bytes = bytes;
+        }
+    }
+}
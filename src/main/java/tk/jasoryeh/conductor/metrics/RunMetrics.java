@@ -0,0 +1,227 @@
+package tk.jasoryeh.conductor.metrics;
+
+import lombok.Getter;
+import tk.jasoryeh.conductor.Conductor;
+import tk.jasoryeh.conductor.V2FileSystemObject;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+import tk.jasoryeh.conductor.downloaders.DownloadScheduler;
+import tk.jasoryeh.conductor.log.Logger;
+import tk.jasoryeh.conductor.scheduler.PrepareExecutor;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings of a run: the time each phase took, the time, bytes and retries of every object and plugin, and the queue
+ * depth of the pools over time. Reported at the end of the run when `metrics` is enabled, and traced when `trace` is.
+ *
+ * Phases and objects are always timed, only sampling the pools and writing the reports depends on the configuration.
+ */
+public class RunMetrics {
+    private static RunMetrics instance;
+
+    public static synchronized RunMetrics get() {
+        if (instance == null) {
+            instance = new RunMetrics();
+        }
+        return instance;
+    }
+
+    private final Logger logger;
+    /**
+     * {@link System#currentTimeMillis()} and {@link System#nanoTime()} when the run started, to tell when timings
+     * happened
+     */
+    @Getter
+    private final long startedMillis = System.currentTimeMillis();
+    @Getter
+    private final long startedNanos = System.nanoTime();
+    private final Map<String, Timing> phases = new LinkedHashMap<>();
+    private final List<Include> includes = new ArrayList<>();
+    private final List<QueueSample> samples = new ArrayList<>();
+    private LauncherConfiguration.MetricsConfig config;
+    private ScheduledExecutorService sampler;
+
+    private RunMetrics() {
+        this.logger = new Logger(RunMetrics.class.getSimpleName());
+    }
+
+    /**
+     * Record a phase of the run ending now
+     * @param name name of the phase
+     * @param start {@link System#nanoTime()} when it started
+     */
+    public synchronized void phase(String name, long start) {
+        this.phases.put(name, Timing.since(start));
+    }
+
+    /**
+     * Record an include fetched from its server, or from the document cache
+     * @param location URL of the include
+     * @param start {@link System#nanoTime()} when fetching started
+     * @param bytes size of the include
+     */
+    public synchronized void include(String location, long start, long bytes) {
+        this.includes.add(new Include(location, Timing.since(start), bytes));
+    }
+
+    /**
+     * Phases in the order they ended, with `fetchIncludes` from the first include fetched to the last one, after
+     * the template was loaded
+     */
+    public synchronized Map<String, Timing> getPhases() {
+        Map<String, Timing> phases = new LinkedHashMap<>();
+        if (!this.includes.isEmpty()) {
+            long start = Long.MAX_VALUE;
+            long end = Long.MIN_VALUE;
+            for (Include include : this.includes) {
+                start = Math.min(start, include.timing.getStart());
+                end = Math.max(end, include.timing.getEnd());
+            }
+            phases.put("fetchIncludes", new Timing(start, end));
+        }
+        phases.putAll(this.phases);
+        return phases;
+    }
+
+    public synchronized List<Include> getIncludes() {
+        return new ArrayList<>(this.includes);
+    }
+
+    public synchronized List<QueueSample> getSamples() {
+        return new ArrayList<>(this.samples);
+    }
+
+    /**
+     * Start sampling the queues of the pools, once the configuration was loaded. Nothing is reported for runs that
+     * fail before.
+     */
+    public synchronized void start(Conductor conductor) {
+        this.config = LauncherConfiguration.get().getMetricsConfig();
+        if (!(this.config.isEnabled() || this.config.isTrace()) || this.sampler != null) {
+            return;
+        }
+        this.sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conductor-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sampler.scheduleAtFixedRate(() -> this.sample(conductor),
+                0, this.config.getInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    private void sample(Conductor conductor) {
+        PrepareExecutor prepare = conductor.getPrepareExecutor();
+        ForkJoinPool apply = conductor.getApplyPool();
+        if (prepare == null || apply == null) {
+            // not created yet
+            return;
+        }
+        DownloadScheduler downloads = DownloadScheduler.get();
+        QueueSample sample = new QueueSample(System.nanoTime(),
+                prepare.queued(), prepare.active(),
+                apply.getQueuedSubmissionCount() + apply.getQueuedTaskCount(), apply.getActiveThreadCount(),
+                downloads.queued(), downloads.active());
+        synchronized (this) {
+            this.samples.add(sample);
+        }
+    }
+
+    /**
+     * Stop sampling, write the report of the run when `metrics` is enabled, and its trace and critical path when
+     * `trace` is
+     * @param layout root objects of the template, empty if the run failed before they were built
+     * @param failure what failed the run, or null if it succeeded
+     */
+    public void finish(Conductor conductor, List<V2FileSystemObject> layout, Throwable failure) {
+        LauncherConfiguration.MetricsConfig config;
+        synchronized (this) {
+            if (this.sampler != null) {
+                this.sampler.shutdownNow();
+                this.sampler = null;
+                this.sample(conductor);
+            }
+            config = this.config;
+        }
+        if (config == null) {
+            return;
+        }
+        if (config.isTrace()) {
+            this.trace(config, layout, failure);
+        }
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            MetricsReport report = new MetricsReport(this, layout, failure);
+            report.writeJson(config.getJson());
+            report.writeOpenMetrics(config.getOpenMetrics());
+            this.logger.info("Metrics written to " + config.getJson().getAbsolutePath()
+                    + " and " + config.getOpenMetrics().getAbsolutePath());
+        } catch (Exception e) {
+            this.logger.warn("Failed to write the metrics of this run: " + e.getMessage());
+        }
+    }
+
+    private void trace(LauncherConfiguration.MetricsConfig config, List<V2FileSystemObject> layout,
+                       Throwable failure) {
+        try {
+            new TraceWriter(this, layout, failure).write(config.getTraceFile());
+            this.logger.info("Trace written to " + config.getTraceFile().getAbsolutePath());
+        } catch (Exception e) {
+            this.logger.warn("Failed to write the trace of this run: " + e.getMessage());
+        }
+        for (String line : new CriticalPath(this, layout).summarize()) {
+            this.logger.info(line);
+        }
+    }
+
+    public static class Include {
+        @Getter
+        private final String location;
+        @Getter
+        private final Timing timing;
+        @Getter
+        private final long bytes;
+
+        Include(String location, Timing timing, long bytes) {
+            this.location = location;
+            this.timing = timing;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Tasks waiting in and run by each pool at one point in time
+     */
+    public static class QueueSample {
+        @Getter
+        private final long time;
+        @Getter
+        private final long prepareQueued;
+        @Getter
+        private final int prepareActive;
+        @Getter
+        private final long applyQueued;
+        @Getter
+        private final int applyActive;
+        @Getter
+        private final int downloadsQueued;
+        @Getter
+        private final int downloadsActive;
+
+        QueueSample(long time, long prepareQueued, int prepareActive, long applyQueued, int applyActive,
+                    int downloadsQueued, int downloadsActive) {
+            this.time = time;
+            this.prepareQueued = prepareQueued;
+            this.prepareActive = prepareActive;
+            this.applyQueued = applyQueued;
+            this.applyActive = applyActive;
+            this.downloadsQueued = downloadsQueued;
+            this.downloadsActive = downloadsActive;
+        }
+    }
+}
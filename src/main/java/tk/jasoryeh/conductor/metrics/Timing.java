@@ -0,0 +1,44 @@
+package tk.jasoryeh.conductor.metrics;
+
+import lombok.Getter;
+
+/**
+ * When something started and ended, in {@link System#nanoTime()}, and the thread it ran on
+ */
+public class Timing {
+    @Getter
+    private final long start;
+    @Getter
+    private final long end;
+    /**
+     * Thread it ran on, null if it spans several threads
+     */
+    @Getter
+    private final Thread thread;
+
+    public Timing(long start, long end) {
+        this(start, end, null);
+    }
+
+    private Timing(long start, long end, Thread thread) {
+        this.start = start;
+        this.end = end;
+        this.thread = thread;
+    }
+
+    /**
+     * @param start {@link System#nanoTime()} when it started
+     * @return timing of something ending now, on this thread
+     */
+    public static Timing since(long start) {
+        return new Timing(start, System.nanoTime(), Thread.currentThread());
+    }
+
+    public long getNanos() {
+        return this.end - this.start;
+    }
+
+    public double getMillis() {
+        return this.getNanos() / 1e6;
+    }
+}
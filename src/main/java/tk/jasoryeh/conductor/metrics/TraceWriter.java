@@ -0,0 +1,217 @@
+package tk.jasoryeh.conductor.metrics;
+
+import com.google.gson.stream.JsonWriter;
+import tk.jasoryeh.conductor.V2FileSystemObject;
+import tk.jasoryeh.conductor.V2FolderObject;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+import tk.jasoryeh.conductor.plugins.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a run in the Trace Event Format, to be opened in Perfetto or chrome://tracing: a span for every phase,
+ * include, object phase, plugin phase and download on the thread it ran on, and the queue depth of the pools as
+ * counters.
+ */
+class TraceWriter {
+    private static final int PID = 1;
+    /**
+     * Track of the phases, which span several threads
+     */
+    private static final long PHASES = 0;
+
+    private final RunMetrics metrics;
+    private final List<V2FileSystemObject> layout;
+    private final Throwable failure;
+    /**
+     * {@link System#nanoTime()} of the first timestamp of the trace
+     */
+    private final long origin;
+    private final Map<Long, String> threads = new LinkedHashMap<>();
+    private JsonWriter json;
+
+    TraceWriter(RunMetrics metrics, List<V2FileSystemObject> layout, Throwable failure) {
+        this.metrics = metrics;
+        this.layout = layout;
+        this.failure = failure;
+        long origin = metrics.getStartedNanos();
+        for (Timing phase : metrics.getPhases().values()) {
+            origin = Math.min(origin, phase.getStart());
+        }
+        this.origin = origin;
+        this.threads.put(PHASES, "phases");
+    }
+
+    void write(File file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            this.json = new JsonWriter(writer);
+            this.json.beginObject();
+            this.json.name("displayTimeUnit").value("ms");
+            this.json.name("otherData").beginObject();
+            this.json.name("name").value(LauncherConfiguration.get().getName());
+            this.json.name("started").value(this.metrics.getStartedMillis());
+            this.json.name("success").value(this.failure == null);
+            if (this.failure != null) {
+                this.json.name("error").value(String.valueOf(this.failure));
+            }
+            this.json.endObject();
+
+            this.json.name("traceEvents").beginArray();
+            for (Map.Entry<String, Timing> phase : this.metrics.getPhases().entrySet()) {
+                this.span(phase.getKey(), "phase", phase.getValue(), PHASES);
+                this.json.endObject();
+            }
+            for (RunMetrics.Include include : this.metrics.getIncludes()) {
+                if (this.span("include", "include", include.getTiming(), null)) {
+                    this.json.name("args").beginObject();
+                    this.json.name("location").value(include.getLocation());
+                    this.json.name("bytes").value(include.getBytes());
+                    this.json.endObject();
+                    this.json.endObject();
+                }
+            }
+            this.objects(this.layout);
+            this.counters();
+            this.threadNames();
+            this.json.endArray();
+            this.json.endObject();
+            this.json.flush();
+        }
+    }
+
+    private void objects(List<V2FileSystemObject> objects) throws IOException {
+        for (V2FileSystemObject object : objects) {
+            NodeMetrics node = object.getMetrics();
+            this.object(object, "prepare", node.getPrepare());
+            this.object(object, "delete", node.getDelete());
+            this.object(object, "apply", node.getApply());
+            for (Plugin plugin : object.getPlugins()) {
+                PluginMetrics metrics = plugin.getMetrics();
+                String name = plugin.getClass().getSimpleName();
+                this.plugin(object, metrics, name + ".prepare", "plugin", metrics.getPrepare(), metrics.getBytes());
+                this.plugin(object, metrics, name + ".execute", "plugin", metrics.getExecute(), 0);
+                for (PluginMetrics.Download download : metrics.getDownloads()) {
+                    this.plugin(object, metrics, "download " + object.getName(), "download",
+                            download.getTiming(), download.getBytes());
+                }
+            }
+            if (object instanceof V2FolderObject) {
+                this.objects(((V2FolderObject) object).children);
+            }
+        }
+    }
+
+    private void object(V2FileSystemObject object, String phase, Timing timing) throws IOException {
+        if (!this.span(phase + " " + object.getName(), phase, timing, null)) {
+            return;
+        }
+        this.json.name("args").beginObject();
+        this.json.name("path").value(object.getPath());
+        this.json.name("type").value(object.getDefinedType().toLowerCase());
+        this.json.name("unchanged").value(object.isUnchanged());
+        this.json.endObject();
+        this.json.endObject();
+    }
+
+    private void plugin(V2FileSystemObject object, PluginMetrics metrics, String name, String category,
+                        Timing timing, long bytes) throws IOException {
+        if (!this.span(name, category, timing, null)) {
+            return;
+        }
+        this.json.name("args").beginObject();
+        this.json.name("path").value(object.getPath());
+        if (metrics.getHost() != null) {
+            this.json.name("host").value(metrics.getHost());
+        }
+        this.json.name("bytes").value(bytes);
+        this.json.name("retries").value(metrics.getRetries());
+        this.json.name("cached").value(metrics.isCached());
+        this.json.endObject();
+        this.json.endObject();
+    }
+
+    /**
+     * Begin a complete event, left open for its arguments
+     * @param tid track to put it on, or null for the thread it ran on
+     * @return whether it was begun, false if it never happened
+     */
+    private boolean span(String name, String category, Timing timing, Long tid) throws IOException {
+        if (timing == null) {
+            return false;
+        }
+        if (tid == null) {
+            Thread thread = timing.getThread();
+            tid = thread == null ? PHASES : thread.getId();
+            if (thread != null) {
+                this.threads.putIfAbsent(tid, thread.getName());
+            }
+        }
+        this.json.beginObject();
+        this.json.name("name").value(name);
+        this.json.name("cat").value(category);
+        this.json.name("ph").value("X");
+        this.json.name("ts").value(this.micros(timing.getStart()));
+        this.json.name("dur").value(timing.getNanos() / 1e3);
+        this.json.name("pid").value(PID);
+        this.json.name("tid").value(tid);
+        return true;
+    }
+
+    private void counters() throws IOException {
+        for (RunMetrics.QueueSample sample : this.metrics.getSamples()) {
+            this.counter("queued", sample.getTime(),
+                    sample.getPrepareQueued(), sample.getApplyQueued(), sample.getDownloadsQueued());
+            this.counter("active", sample.getTime(),
+                    sample.getPrepareActive(), sample.getApplyActive(), sample.getDownloadsActive());
+        }
+    }
+
+    private void counter(String name, long time, long prepare, long apply, long downloads) throws IOException {
+        this.json.beginObject();
+        this.json.name("name").value(name);
+        this.json.name("ph").value("C");
+        this.json.name("ts").value(this.micros(time));
+        this.json.name("pid").value(PID);
+        this.json.name("args").beginObject();
+        this.json.name("prepare").value(prepare);
+        this.json.name("apply").value(apply);
+        this.json.name("downloads").value(downloads);
+        this.json.endObject();
+        this.json.endObject();
+    }
+
+    private void threadNames() throws IOException {
+        this.metadata("process_name", null, "conductor " + LauncherConfiguration.get().getName());
+        for (Map.Entry<Long, String> thread : this.threads.entrySet()) {
+            this.metadata("thread_name", thread.getKey(), thread.getValue());
+        }
+    }
+
+    private void metadata(String name, Long tid, String value) throws IOException {
+        this.json.beginObject();
+        this.json.name("name").value(name);
+        this.json.name("ph").value("M");
+        this.json.name("pid").value(PID);
+        if (tid != null) {
+            this.json.name("tid").value(tid);
+        }
+        this.json.name("args").beginObject();
+        this.json.name("name").value(value);
+        this.json.endObject();
+        this.json.endObject();
+    }
+
+    /**
+     * @return microseconds since the trace started
+     */
+    private double micros(long nanos) {
+        return (nanos - this.origin) / 1e3;
+    }
+}
@@ -0,0 +1,138 @@
+package tk.jasoryeh.conductor.plugins;
+
+import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.V2FileSystemObject;
+import tk.jasoryeh.conductor.V2FolderObject;
+import tk.jasoryeh.conductor.config.InvalidConfigurationException;
+import tk.jasoryeh.conductor.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts the entries of an archive below a prefix that match the include globs.
+ *
+ * The entries for a folder are extracted to a directory in its temporary directory, and moved into the folder after
+ * its children were applied, so children take precedence over entries of the archive.
+ */
+public abstract class ArchivePlugin extends Plugin {
+    /**
+     * Only entries below this path are extracted, relative to it, empty for all entries
+     */
+    protected final String prefix;
+    /**
+     * Globs selecting entries, relative to the prefix, all entries if empty
+     */
+    protected final List<PathMatcher> include;
+    /**
+     * Name of the directory in the temporary directory of a folder holding its extracted entries
+     */
+    private final String extractedDirectory;
+
+    protected ArchivePlugin(V2FileSystemObject object, String prefix, List<String> include, String extractedDirectory) {
+        super(object);
+        prefix = trimSlashes(prefix.replace('\\', '/'));
+        this.prefix = prefix.isEmpty() ? prefix : prefix + "/";
+        this.include = new ArrayList<>();
+        for (String glob : include) {
+            this.include.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        }
+        this.extractedDirectory = extractedDirectory;
+    }
+
+    protected boolean isFolder() {
+        return this.getFsObject() instanceof V2FolderObject;
+    }
+
+    protected File extracted() {
+        return new File(this.getFsObject().getTemporary(), this.extractedDirectory);
+    }
+
+    /**
+     * @param name name of an entry in the archive
+     * @return path of the entry relative to the prefix, or null if it is not below the prefix
+     */
+    protected String relative(String name) {
+        name = trimSlashes(name.replace('\\', '/'));
+        if (!name.startsWith(this.prefix)) {
+            return null;
+        }
+        return trimSlashes(name.substring(this.prefix.length()));
+    }
+
+    /**
+     * @param relative path of an entry relative to the prefix
+     * @return whether the include globs select the entry
+     */
+    protected boolean isIncluded(String relative) {
+        return this.include.isEmpty() || this.include.stream().anyMatch(glob -> glob.matches(Paths.get(relative)));
+    }
+
+    /**
+     * Where an entry is extracted to
+     * @param root directory entries are extracted into, absolute and normalized
+     * @param name name of the entry in the archive, for errors
+     * @param relative path of the entry relative to the prefix
+     * @throws InvalidConfigurationException if the entry would end up outside of the directory
+     */
+    protected Path target(Path root, String name, String relative) {
+        Path target = root.resolve(relative).normalize();
+        if (!target.startsWith(root) || target.equals(root)) {
+            throw new InvalidConfigurationException("Archive entry " + name
+                    + " would be extracted outside of " + this.getFsObject().getName());
+        }
+        return target;
+    }
+
+    @Override
+    public boolean isStable() {
+        // same archive, same result
+        return true;
+    }
+
+    @SneakyThrows
+    @Override
+    public void execute() {
+        if (!this.isFolder()) {
+            return;
+        }
+        // after the children were applied, they take precedence over entries of the archive
+        Path extracted = this.extracted().toPath();
+        if (Files.isDirectory(extracted)) {
+            merge(extracted, this.getFsObject().getFile().toPath());
+            FileUtils.delete(extracted.toFile());
+        }
+    }
+
+    /**
+     * Move the contents of a directory into another, keeping what is already there
+     */
+    private static void merge(Path source, Path destination) throws IOException {
+        Files.createDirectories(destination);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(source)) {
+            for (Path entry : entries) {
+                Path target = destination.resolve(entry.getFileName().toString());
+                if (Files.isDirectory(entry) && Files.isDirectory(target)) {
+                    merge(entry, target);
+                } else if (!Files.exists(target)) {
+                    Files.move(entry, target);
+                }
+            }
+        }
+    }
+
+    protected static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+}
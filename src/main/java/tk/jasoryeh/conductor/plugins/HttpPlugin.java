@@ -1,6 +1,10 @@
 package tk.jasoryeh.conductor.plugins;
 
 import tk.jasoryeh.conductor.V2FileSystemObject;
+import tk.jasoryeh.conductor.cache.ArtifactCache;
+import tk.jasoryeh.conductor.downloaders.DownloadScheduler;
+import tk.jasoryeh.conductor.downloaders.Downloader;
+import tk.jasoryeh.conductor.downloaders.Integrity;
 import tk.jasoryeh.conductor.downloaders.URLDownloader;
 import tk.jasoryeh.conductor.log.Logger;
 import tk.jasoryeh.conductor.secrets.HttpPluginSecret;
@@ -9,30 +13,110 @@ import tk.jasoryeh.conductor.util.Assert;
 import java.io.File;
 import java.net.URL;
 
-public class HttpPlugin extends Plugin {
+public class HttpPlugin extends Plugin implements StreamSource {
     private HttpPluginSecret secrets;
     private URL url;
+    /**
+     * The resource at this URL never changes, so a cached copy can be used without revalidating it with the server
+     */
+    private boolean immutable;
+    /**
+     * Overrides of the global segmented download settings, null if not overridden
+     */
+    private Integer segments;
+    private Long segmentThreshold;
+    /**
+     * Digests the resource must have
+     */
+    private Integrity integrity;
+    private String preparedSha256;
+    /**
+     * The next plugin reads the resource as it is received, nothing is downloaded when preparing
+     */
+    private boolean streamed;
 
-    public HttpPlugin(V2FileSystemObject object, HttpPluginSecret secrets, URL url) {
+    public HttpPlugin(V2FileSystemObject object, HttpPluginSecret secrets, URL url, boolean immutable,
+                      Integer segments, Long segmentThreshold, Integrity integrity) {
         super(object);
+        this.metrics.setHost(url.getHost());
         this.secrets = secrets;
         this.url = url;
+        this.immutable = immutable;
+        this.segments = segments;
+        this.segmentThreshold = segmentThreshold;
+        this.integrity = integrity;
+    }
+
+    @Override
+    public void setStreamed(boolean streamed) {
+        this.streamed = streamed;
     }
 
     @Override
     public void prepare() {
+        if (this.streamed) {
+            this.logger.debug("Streaming " + this.url + " to the next plugin");
+            return;
+        }
         this.logger.info("HttpPlugin is attempting to retrieve " + this.url);
-        File tempFile = this.getFsObject().getTemporary();
+        File tempFile = this.getFsObject().getDownload();
         File parentFile = tempFile.getParentFile();
         Assert.isTrue(parentFile.exists() || parentFile.mkdirs(), "mkdirs - http");
+        URLDownloader downloader = this.downloader();
+        DownloadScheduler.get().run(
+                this.getFsObject().getConductor().getPrepareExecutor(),
+                this.url.getHost(),
+                ArtifactCache.get().sizeOf(ArtifactCache.key("http", this.url.toString())),
+                this.metrics,
+                downloader::fetch);
+        Integrity.Hasher digests = downloader.getDigests();
+        this.preparedSha256 = digests == null ? null : digests.sha256();
+        this.logger.info("-");
+    }
+
+    @Override
+    public void stream(Consumer consumer) {
+        URLDownloader downloader = this.downloader();
+        DownloadScheduler.get().run(
+                this.getFsObject().getConductor().getPrepareExecutor(),
+                this.url.getHost(),
+                ArtifactCache.get().sizeOf(ArtifactCache.key("http", this.url.toString())),
+                this.metrics,
+                () -> Downloader.retrying(this.logger, this.url.toString(), this.metrics, () -> {
+                    downloader.read(consumer::accept);
+                    return null;
+                }));
+    }
+
+    private URLDownloader downloader() {
         URLDownloader downloader = new URLDownloader(
-                this.getFsObject().getTemporary(),
+                this.getFsObject().getDownload(),
                 true,
                 this.url.toString(),
                 this.secrets
         );
-        downloader.download();
-        this.logger.info("-");
+        downloader.setCacheable(true);
+        downloader.setRevalidate(!this.immutable);
+        downloader.setIntegrity(this.integrity);
+        downloader.setMetrics(this.metrics);
+        if (this.segments != null) {
+            downloader.setSegments(this.segments);
+        }
+        if (this.segmentThreshold != null) {
+            downloader.setSegmentThreshold(this.segmentThreshold);
+        }
+        return downloader;
+    }
+
+    @Override
+    public String getPreparedSha256() {
+        return this.preparedSha256;
+    }
+
+    @Override
+    public boolean isStable() {
+        // content with known digests cannot change without failing the download
+        return this.immutable || !this.integrity.isEmpty();
     }
 
     @Override
@@ -5,6 +5,7 @@ import lombok.SneakyThrows;
 import tk.jasoryeh.conductor.V2FileSystemObject;
 import tk.jasoryeh.conductor.V2Template;
 import tk.jasoryeh.conductor.config.InvalidConfigurationException;
+import tk.jasoryeh.conductor.downloaders.Integrity;
 import tk.jasoryeh.conductor.secrets.HttpPluginSecret;
 
 import java.net.URL;
@@ -23,7 +24,12 @@ public class HttpPluginFactory extends PluginFactory<HttpPlugin, HttpPluginSecre
         String http = object.get("http").getAsString();
         http = this.getTemplate().resolveVariables(http);
         URL url = new URL(http);
-        return new HttpPlugin(fsObject, this.parseSecret(object), url);
+        boolean immutable = object.has("http_immutable") && object.get("http_immutable").getAsBoolean();
+        Integer segments = object.has("http_segments") ? object.get("http_segments").getAsInt() : null;
+        Long segmentThreshold = object.has("http_segment_threshold") ?
+                object.get("http_segment_threshold").getAsLong() * 1024L * 1024L : null;
+        return new HttpPlugin(fsObject, this.parseSecret(object), url, immutable, segments, segmentThreshold,
+                Integrity.of(object, this.getTemplate()));
     }
 
     @Override
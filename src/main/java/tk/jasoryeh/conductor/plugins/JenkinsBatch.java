@@ -0,0 +1,265 @@
+package tk.jasoryeh.conductor.plugins;
+
+import com.offbytwo.jenkins.model.Artifact;
+import com.offbytwo.jenkins.model.BuildWithDetails;
+import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.cache.ArtifactCache;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+import tk.jasoryeh.conductor.downloaders.DownloadScheduler;
+import tk.jasoryeh.conductor.downloaders.Integrity;
+import tk.jasoryeh.conductor.downloaders.IntegrityException;
+import tk.jasoryeh.conductor.downloaders.JenkinsDownloader;
+import tk.jasoryeh.conductor.downloaders.JenkinsSession;
+import tk.jasoryeh.conductor.log.Logger;
+import tk.jasoryeh.conductor.scheduler.PrepareExecutor;
+import tk.jasoryeh.conductor.secrets.JenkinsPluginSecret;
+import tk.jasoryeh.conductor.util.Assert;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Jenkins plugins downloading artifacts of the same job and build.
+ *
+ * Whichever member is prepared first resolves the build once and downloads the artifacts of every member
+ * concurrently, the other members wait for their artifact. Members asking for the same artifact share one download.
+ */
+public class JenkinsBatch {
+    private static final Map<String, JenkinsBatch> BATCHES = new ConcurrentHashMap<>();
+
+    public static JenkinsBatch of(JenkinsPluginSecret secret, String job, int build) {
+        return BATCHES.computeIfAbsent(ArtifactCache.key(secret.identity(), job, build),
+                key -> new JenkinsBatch(secret, job, build));
+    }
+
+    private final Logger logger;
+    private final JenkinsPluginSecret secret;
+    private final String job;
+    private final int build;
+    private final List<JenkinsPlugin> members = new ArrayList<>();
+    private final Map<JenkinsPlugin, CompletableFuture<Void>> results = new ConcurrentHashMap<>();
+    private boolean started = false;
+
+    private JenkinsBatch(JenkinsPluginSecret secret, String job, int build) {
+        this.logger = new Logger(JenkinsBatch.class.getSimpleName()).child(job + "#" + build);
+        this.secret = secret;
+        this.job = job;
+        this.build = build;
+    }
+
+    synchronized void add(JenkinsPlugin plugin) {
+        this.members.add(plugin);
+    }
+
+    /**
+     * Wait until the artifact of a member was downloaded, downloading the artifacts of the whole batch if it is the
+     * first member to be prepared.
+     * @param member plugin being prepared
+     */
+    @SneakyThrows
+    public void prepare(JenkinsPlugin member) {
+        Map<String, List<JenkinsPlugin>> byArtifact = null;
+        synchronized (this) {
+            if (!this.started) {
+                this.started = true;
+                byArtifact = new LinkedHashMap<>();
+                for (JenkinsPlugin plugin : this.members) {
+                    // unchanged objects are never prepared, nothing would wait for their artifact, and streamed
+                    //   artifacts are read by the next plugin instead
+                    if (plugin.getFsObject().isUnchanged() || plugin.isStreamed()) {
+                        continue;
+                    }
+                    byArtifact.computeIfAbsent(plugin.getArtifact().toLowerCase(), name -> new ArrayList<>()).add(plugin);
+                    this.results.put(plugin, new CompletableFuture<>());
+                }
+            }
+        }
+        PrepareExecutor executor = member.getFsObject().getConductor().getPrepareExecutor();
+        if (byArtifact != null) {
+            this.downloadAll(byArtifact, executor);
+        }
+
+        CompletableFuture<Void> result = this.results.get(member);
+        if (result == null) {
+            // not part of the batch when it was downloaded
+            member.download(-1, member.getIntegrity());
+            return;
+        }
+        try {
+            // downloaded by the first member, maybe with tasks that did not start yet
+            executor.block(result::get);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void downloadAll(Map<String, List<JenkinsPlugin>> byArtifact, PrepareExecutor executor) {
+        this.logger.info(String.format("Downloading %d artifacts for %d objects",
+                byArtifact.size(), this.results.size()));
+
+        Set<String> extracted = Collections.emptySet();
+        int archiveThreshold = LauncherConfiguration.get().getDownloadConfig().getJenkinsArchiveThreshold();
+        if (archiveThreshold > 0) {
+            try {
+                extracted = this.extractFromArchive(byArtifact, archiveThreshold, executor);
+            } catch (Exception e) {
+                this.logger.warn("Failed to use the build archive, downloading artifacts one by one: " + e);
+            }
+        }
+
+        int number = -1;
+        try {
+            number = JenkinsSession.get().buildNumber(this.secret, this.job, this.build);
+        } catch (Exception e) {
+            // reported by the downloads
+        }
+        int buildNumber = number;
+
+        List<Runnable> downloads = new ArrayList<>();
+        for (Map.Entry<String, List<JenkinsPlugin>> artifact : byArtifact.entrySet()) {
+            if (extracted.contains(artifact.getKey())) {
+                this.complete(artifact.getValue(), null);
+                continue;
+            }
+            downloads.add(() -> {
+                List<JenkinsPlugin> plugins = artifact.getValue();
+                try {
+                    JenkinsPlugin first = plugins.get(0);
+                    first.download(buildNumber == -1 ? -1 : ArtifactCache.get().sizeOf(
+                            JenkinsDownloader.cacheKey(this.secret, this.job, buildNumber, first.getArtifact())),
+                            integrity(plugins));
+                    File downloaded = first.getFsObject().getDownload();
+                    for (JenkinsPlugin other : plugins.subList(1, plugins.size())) {
+                        if (downloaded.exists()) {
+                            copy(downloaded, other.getFsObject().getDownload());
+                            other.preparedSha256 = first.preparedSha256;
+                        }
+                    }
+                    this.complete(plugins, null);
+                } catch (Throwable t) {
+                    this.complete(plugins, t);
+                }
+            });
+        }
+        executor.invokeAll(downloads);
+    }
+
+    /**
+     * Download the archive of all artifacts of the build and extract the requested ones, if enough of them are not
+     * cached already.
+     * @return names of the artifacts extracted
+     */
+    private Set<String> extractFromArchive(Map<String, List<JenkinsPlugin>> byArtifact, int threshold,
+                                           PrepareExecutor executor) throws Exception {
+        JenkinsSession session = JenkinsSession.get();
+        ArtifactCache cache = ArtifactCache.get();
+        int number = session.buildNumber(this.secret, this.job, this.build);
+
+        Map<String, List<JenkinsPlugin>> wanted = new HashMap<>();
+        for (Map.Entry<String, List<JenkinsPlugin>> artifact : byArtifact.entrySet()) {
+            String name = artifact.getValue().get(0).getArtifact();
+            if (cache.sizeOf(JenkinsDownloader.cacheKey(this.secret, this.job, number, name)) < 0) {
+                wanted.put(artifact.getKey(), artifact.getValue());
+            }
+        }
+        if (wanted.size() < threshold) {
+            return Collections.emptySet();
+        }
+
+        this.logger.info(String.format("Extracting %d artifacts from the archive of build #%d", wanted.size(), number));
+        BuildWithDetails build = session.build(this.secret, this.job, number);
+        Artifact archive = new Artifact();
+        archive.setFileName("archive.zip");
+        archive.setRelativePath("*zip*/archive.zip");
+
+        return DownloadScheduler.get().run(executor, this.secret.getHost().getHost(), -1, null,
+                () -> this.extract(build, archive, wanted, number));
+    }
+
+    private Set<String> extract(BuildWithDetails build, Artifact archive, Map<String, List<JenkinsPlugin>> wanted,
+                                int number) throws Exception {
+        ArtifactCache cache = ArtifactCache.get();
+        Map<String, String> fingerprints = JenkinsSession.get().fingerprints(this.secret, this.job, number);
+        Set<String> extracted = new HashSet<>();
+        try (ZipInputStream zip = new ZipInputStream(build.downloadArtifact(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String fileName = entry.getName().substring(entry.getName().lastIndexOf('/') + 1).toLowerCase();
+                List<JenkinsPlugin> plugins = wanted.get(fileName);
+                // artifacts are matched by file name, the first match wins like for single downloads
+                if (plugins == null || extracted.contains(fileName)) {
+                    continue;
+                }
+
+                File first = plugins.get(0).getFsObject().getDownload();
+                Integrity integrity = integrity(plugins).with(Integrity.MD5, fingerprints.get(fileName));
+                Integrity.Hasher hasher = integrity.hasher();
+                long start = System.nanoTime();
+                write(hasher.wrap(zip), first);
+                try {
+                    integrity.verify(hasher, fileName);
+                } catch (IntegrityException e) {
+                    // downloaded on its own instead, where it is retried
+                    this.logger.warn(e.getMessage() + ", not using the build archive for it");
+                    Files.delete(first.toPath());
+                    continue;
+                }
+                plugins.get(0).getMetrics().transferred(first.length(), start);
+                for (JenkinsPlugin other : plugins.subList(1, plugins.size())) {
+                    copy(first, other.getFsObject().getDownload());
+                }
+                plugins.forEach(plugin -> plugin.preparedSha256 = hasher.sha256());
+                cache.store(JenkinsDownloader.cacheKey(this.secret, this.job, number, plugins.get(0).getArtifact()),
+                        first, null, null, hasher.sha256());
+                extracted.add(fileName);
+            }
+        }
+        this.logger.info(String.format("Extracted %d of %d artifacts from the build archive", extracted.size(), wanted.size()));
+        return extracted;
+    }
+
+    /**
+     * Digests expected by every plugin sharing a download
+     */
+    private static Integrity integrity(List<JenkinsPlugin> plugins) {
+        Integrity integrity = Integrity.NONE;
+        for (JenkinsPlugin plugin : plugins) {
+            integrity = integrity.merge(plugin.getIntegrity(), plugin.getArtifact());
+        }
+        return integrity;
+    }
+
+    private void complete(List<JenkinsPlugin> plugins, Throwable failure) {
+        for (JenkinsPlugin plugin : plugins) {
+            CompletableFuture<Void> result = this.results.get(plugin);
+            if (failure == null) {
+                result.complete(null);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static void write(InputStream in, File destination) throws Exception {
+        File parent = destination.getAbsoluteFile().getParentFile();
+        Assert.isTrue(parent.exists() || parent.mkdirs(), "mkdirs - jenkins");
+        Files.copy(in, destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void copy(File source, File destination) throws Exception {
+        File parent = destination.getAbsoluteFile().getParentFile();
+        Assert.isTrue(parent.exists() || parent.mkdirs(), "mkdirs - jenkins");
+        Files.copy(source.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
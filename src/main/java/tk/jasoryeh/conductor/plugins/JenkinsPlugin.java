@@ -1,35 +1,119 @@
 package tk.jasoryeh.conductor.plugins;
 
+import lombok.Getter;
 import tk.jasoryeh.conductor.V2FileSystemObject;
+import tk.jasoryeh.conductor.downloaders.DownloadScheduler;
+import tk.jasoryeh.conductor.downloaders.Downloader;
+import tk.jasoryeh.conductor.downloaders.Integrity;
 import tk.jasoryeh.conductor.downloaders.JenkinsDownloader;
 import tk.jasoryeh.conductor.secrets.JenkinsPluginSecret;
 
-public class JenkinsPlugin extends Plugin {
+public class JenkinsPlugin extends Plugin implements StreamSource {
+    @Getter
     private final JenkinsPluginSecret secret;
+    @Getter
     private final String artifact;
+    @Getter
     private final String job;
+    @Getter
     private final int build;
+    /**
+     * Digests the artifact must have, besides the fingerprint Jenkins recorded for it
+     */
+    @Getter
+    private final Integrity integrity;
+    private final JenkinsBatch batch;
+    /**
+     * Set by the batch when the artifact was downloaded for another plugin
+     */
+    @Getter
+    String preparedSha256;
+    /**
+     * The next plugin reads the artifact as it is received, it is not part of the batch downloads
+     */
+    @Getter
+    private boolean streamed;
 
-    public JenkinsPlugin(V2FileSystemObject fsObject, JenkinsPluginSecret secret, String job, int build, String artifact) {
+    public JenkinsPlugin(V2FileSystemObject fsObject, JenkinsPluginSecret secret, String job, int build, String artifact,
+                         Integrity integrity) {
         super(fsObject);
+        this.metrics.setHost(secret.getHost().getHost());
         this.secret = secret;
         this.artifact = artifact;
         this.job = job;
         this.build = build;
+        this.integrity = integrity;
+        this.batch = JenkinsBatch.of(secret, job, build);
+        this.batch.add(this);
+    }
+
+    @Override
+    public void setStreamed(boolean streamed) {
+        this.streamed = streamed;
     }
 
     @Override
     public void prepare() {
+        if (this.streamed) {
+            this.logger.debug(String.format("Streaming %s of #%d on %s to the next plugin", this.artifact, this.build, this.job));
+            return;
+        }
         this.logger.info(String.format("Jenkins is attempting to prepare: %s on #%d on %s", this.artifact, this.build, this.job));
+        this.batch.prepare(this);
+        this.logger.info("-");
+    }
+
+    /**
+     * Download the artifact of this plugin on its own
+     * @param estimatedSize expected size in bytes, or -1 if unknown
+     * @param integrity digests the artifact must have, those of every plugin sharing the download
+     */
+    void download(long estimatedSize, Integrity integrity) {
         JenkinsDownloader jenkinsDownloader = new JenkinsDownloader(
-                this.getFsObject().getTemporary(),
+                this.getFsObject().getDownload(),
                 true,
                 this.secret,
                 this.job,
                 this.build, this.artifact
         );
-        jenkinsDownloader.download();
-        this.logger.info("-");
+        jenkinsDownloader.setIntegrity(integrity);
+        jenkinsDownloader.setMetrics(this.metrics);
+        DownloadScheduler.get().run(
+                this.getFsObject().getConductor().getPrepareExecutor(),
+                this.secret.getHost().getHost(),
+                estimatedSize,
+                this.metrics,
+                jenkinsDownloader::fetch);
+        Integrity.Hasher digests = jenkinsDownloader.getDigests();
+        this.preparedSha256 = digests == null ? null : digests.sha256();
+    }
+
+    @Override
+    public void stream(Consumer consumer) {
+        JenkinsDownloader jenkinsDownloader = new JenkinsDownloader(
+                this.getFsObject().getDownload(),
+                true,
+                this.secret,
+                this.job,
+                this.build, this.artifact
+        );
+        jenkinsDownloader.setIntegrity(this.integrity);
+        jenkinsDownloader.setMetrics(this.metrics);
+        DownloadScheduler.get().run(
+                this.getFsObject().getConductor().getPrepareExecutor(),
+                this.secret.getHost().getHost(),
+                -1,
+                this.metrics,
+                () -> Downloader.retrying(this.logger, this.artifact, this.metrics, () -> {
+                    jenkinsDownloader.read(consumer::accept);
+                    return null;
+                }));
+    }
+
+    @Override
+    public boolean isStable() {
+        // the latest build may change between runs
+        return this.build != -1;
     }
 
     @Override
@@ -4,6 +4,7 @@ import com.google.gson.JsonObject;
 import tk.jasoryeh.conductor.V2FileSystemObject;
 import tk.jasoryeh.conductor.V2Template;
 import tk.jasoryeh.conductor.config.InvalidConfigurationException;
+import tk.jasoryeh.conductor.downloaders.Integrity;
 import tk.jasoryeh.conductor.secrets.JenkinsPluginSecret;
 
 public class JenkinsPluginFactory extends PluginFactory<JenkinsPlugin, JenkinsPluginSecret> {
@@ -20,7 +21,8 @@ public class JenkinsPluginFactory extends PluginFactory<JenkinsPlugin, JenkinsPl
                 this.parseSecret(contentDef),
                 template.resolveVariables(contentDef.get("jenkins_job").getAsString()),
                 contentDef.has("jenkins_build") ? contentDef.get("jenkins_build").getAsInt() : -1,
-                template.resolveVariables(contentDef.get("jenkins_artifact").getAsString())
+                template.resolveVariables(contentDef.get("jenkins_artifact").getAsString()),
+                Integrity.of(contentDef, template)
         );
     }
 
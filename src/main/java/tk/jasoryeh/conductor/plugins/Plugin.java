@@ -3,6 +3,7 @@ package tk.jasoryeh.conductor.plugins;
 import lombok.Getter;
 import tk.jasoryeh.conductor.V2FileSystemObject;
 import tk.jasoryeh.conductor.log.Logger;
+import tk.jasoryeh.conductor.metrics.PluginMetrics;
 
 public abstract class Plugin {
 
@@ -10,12 +11,21 @@ public abstract class Plugin {
     protected Logger logger;
     @Getter
     private V2FileSystemObject fsObject;
+    @Getter
+    protected final PluginMetrics metrics = new PluginMetrics();
 
     public Plugin(V2FileSystemObject fsObject) {
         this.fsObject = fsObject;
         this.logger = this.fsObject.getLogger().child(this.getClass().getSimpleName());
     }
 
+    /**
+     * Called once all plugins of the object were created
+     * @param previous plugin before this one in the plugins of the object, or null if this is the first one
+     */
+    public void follow(Plugin previous) {
+    }
+
     /**
      * Prepare required resources in the temporary directory.
      */
@@ -26,4 +36,20 @@ public abstract class Plugin {
      */
     public abstract void execute();
 
+    /**
+     * Whether this plugin always produces the same result for the same definition.
+     * @return true if the result of a previous run can be kept when the definition did not change
+     */
+    public boolean isStable() {
+        return false;
+    }
+
+    /**
+     * SHA-256 of the download this plugin prepared, when it was computed while downloading
+     * @return hex SHA-256, or null if unknown
+     */
+    public String getPreparedSha256() {
+        return null;
+    }
+
 }
@@ -15,6 +15,8 @@ public class PluginFactoryRepository {
         this.logger = template.getLogger().child(this.getClass().getSimpleName());
         this.register(new HttpPluginFactory(template));
         this.register(new JenkinsPluginFactory(template));
+        this.register(new UnzipPluginFactory(template));
+        this.register(new TarPluginFactory(template));
     }
 
     /**
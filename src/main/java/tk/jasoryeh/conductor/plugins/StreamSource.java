@@ -0,0 +1,24 @@
+package tk.jasoryeh.conductor.plugins;
+
+import java.io.InputStream;
+
+/**
+ * A plugin downloading something that the next plugin of the object can read as it arrives, instead of from the
+ * downloaded file.
+ */
+public interface StreamSource {
+    /**
+     * Stop downloading to the download file of the object when it is prepared, the next plugin streams it instead
+     */
+    void setStreamed(boolean streamed);
+
+    /**
+     * Download and pass the content to a consumer while it is received, in a download slot of its host
+     * @param consumer reads the content, the stream is closed once it returns
+     */
+    void stream(Consumer consumer);
+
+    interface Consumer {
+        void accept(InputStream in) throws Exception;
+    }
+}
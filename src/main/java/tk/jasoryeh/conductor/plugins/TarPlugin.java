@@ -0,0 +1,132 @@
+package tk.jasoryeh.conductor.plugins;
+
+import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.V2FileSystemObject;
+import tk.jasoryeh.conductor.config.InvalidConfigurationException;
+import tk.jasoryeh.conductor.util.Assert;
+import tk.jasoryeh.conductor.util.FileUtils;
+import tk.jasoryeh.conductor.util.TarReader;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Extracts a tar or tar.gz archive into a folder.
+ *
+ * Following a plugin that can stream its download (http, jenkins), the archive is extracted as it is received: nothing
+ * is written to disk but the extracted entries, and only a buffer of the archive is held in memory. Otherwise, the
+ * archive downloaded by the previous plugin is extracted.
+ */
+public class TarPlugin extends ArchivePlugin {
+    private static final int BUFFER = 64 * 1024;
+
+    public enum Compression {
+        /**
+         * gzip if the archive starts like gzip, none otherwise
+         */
+        AUTO,
+        GZIP,
+        NONE
+    }
+
+    private final Compression compression;
+    private StreamSource source;
+
+    public TarPlugin(V2FileSystemObject object, String prefix, List<String> include, Compression compression) {
+        super(object, prefix, include, ".conductor-untar");
+        this.compression = compression;
+    }
+
+    @Override
+    public void follow(Plugin previous) {
+        if (previous instanceof StreamSource) {
+            this.source = (StreamSource) previous;
+            this.source.setStreamed(true);
+        }
+    }
+
+    @SneakyThrows
+    @Override
+    public void prepare() {
+        File destination = this.extracted();
+        try {
+            if (this.source != null) {
+                this.source.stream(this::extract);
+                return;
+            }
+            File archive = this.getFsObject().getDownload();
+            if (!archive.isFile()) {
+                throw new InvalidConfigurationException("Nothing to extract for " + this.getFsObject().getName()
+                        + ", the tar plugin must follow a plugin downloading the archive.");
+            }
+            try (InputStream in = Files.newInputStream(archive.toPath())) {
+                this.extract(in);
+            }
+            Files.delete(archive.toPath());
+        } catch (Throwable t) {
+            // never leave part of an archive behind to be merged into the folder
+            FileUtils.delete(destination);
+            throw t;
+        }
+    }
+
+    private void extract(InputStream in) throws IOException {
+        Path root = this.extracted().toPath().toAbsolutePath().normalize();
+        // a download failing its integrity check is streamed again, starting over
+        Assert.isTrue(FileUtils.delete(root.toFile()), "Failed to clear " + root);
+        Files.createDirectories(root);
+        long start = System.nanoTime();
+        int entries = 0;
+        long bytes = 0;
+        try (TarReader tar = new TarReader(this.decompress(in))) {
+            TarReader.Entry entry;
+            while ((entry = tar.next()) != null) {
+                String relative = this.relative(entry.getName());
+                if (relative == null || relative.isEmpty() || !this.isIncluded(relative)) {
+                    continue;
+                }
+                if (entry.isLink()) {
+                    this.logger.warn("Skipping link " + entry.getName() + " -> " + entry.getLinkName());
+                    continue;
+                }
+                if (!entry.isDirectory() && !entry.isFile()) {
+                    continue;
+                }
+
+                Path target = this.target(root, entry.getName(), relative);
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
+                    continue;
+                }
+                Files.createDirectories(target.getParent());
+                bytes += Files.copy(tar, target, StandardCopyOption.REPLACE_EXISTING);
+                if ((entry.getMode() & 0100) != 0) {
+                    target.toFile().setExecutable(true);
+                }
+                entries++;
+            }
+        }
+        this.logger.info(String.format("Extracted %d files, %d bytes in %dms",
+                entries, bytes, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private InputStream decompress(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER);
+        Compression compression = this.compression;
+        if (compression == Compression.AUTO) {
+            buffered.mark(2);
+            int first = buffered.read();
+            int second = buffered.read();
+            buffered.reset();
+            compression = first == 0x1f && second == 0x8b ? Compression.GZIP : Compression.NONE;
+        }
+        return compression == Compression.GZIP ? new GZIPInputStream(buffered, BUFFER) : buffered;
+    }
+}
@@ -0,0 +1,54 @@
+package tk.jasoryeh.conductor.plugins;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import tk.jasoryeh.conductor.V2FileSystemObject;
+import tk.jasoryeh.conductor.V2FolderObject;
+import tk.jasoryeh.conductor.V2Template;
+import tk.jasoryeh.conductor.config.InvalidConfigurationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TarPluginFactory extends PluginFactorySecretless<TarPlugin> {
+    public TarPluginFactory(V2Template template) {
+        super(template);
+    }
+
+    @Override
+    public TarPlugin parse(V2FileSystemObject fsObject, JsonObject object) {
+        if (!(fsObject instanceof V2FolderObject)) {
+            throw new InvalidConfigurationException("The tar plugin can only extract into folders, not into "
+                    + fsObject.getName());
+        }
+        String prefix = object.has("tar_prefix")
+                ? this.getTemplate().resolveVariables(object.get("tar_prefix").getAsString()) : "";
+        List<String> include = new ArrayList<>();
+        if (object.has("tar_include")) {
+            JsonElement element = object.get("tar_include");
+            if (element.isJsonArray()) {
+                for (JsonElement glob : element.getAsJsonArray()) {
+                    include.add(this.getTemplate().resolveVariables(glob.getAsString()));
+                }
+            } else {
+                include.add(this.getTemplate().resolveVariables(element.getAsString()));
+            }
+        }
+        TarPlugin.Compression compression = TarPlugin.Compression.AUTO;
+        if (object.has("tar_compression")) {
+            String value = this.getTemplate().resolveVariables(object.get("tar_compression").getAsString());
+            try {
+                compression = TarPlugin.Compression.valueOf(value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new InvalidConfigurationException("Unknown tar_compression " + value
+                        + " on " + fsObject.getName() + ", expected auto, gzip or none");
+            }
+        }
+        return new TarPlugin(fsObject, prefix, include, compression);
+    }
+
+    @Override
+    public String name() {
+        return "tar";
+    }
+}
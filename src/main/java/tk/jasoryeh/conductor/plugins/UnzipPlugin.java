@@ -0,0 +1,152 @@
+package tk.jasoryeh.conductor.plugins;
+
+import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.V2FileSystemObject;
+import tk.jasoryeh.conductor.config.InvalidConfigurationException;
+import tk.jasoryeh.conductor.scheduler.PrepareExecutor;
+import tk.jasoryeh.conductor.util.Assert;
+import tk.jasoryeh.conductor.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts the archive downloaded by the previous plugins of an object.
+ *
+ * For a file, the selected entry becomes the file. For a folder, the selected entries are extracted into the folder,
+ * next to its children. Entries are extracted in parallel, every worker reading the archive through its own
+ * {@link ZipFile}.
+ */
+public class UnzipPlugin extends ArchivePlugin {
+    /**
+     * Entry a file is extracted from, null to use the first selected entry
+     */
+    private final String location;
+
+    public UnzipPlugin(V2FileSystemObject object, String prefix, List<String> include, String location) {
+        super(object, prefix, include, ".conductor-unzip");
+        this.location = location;
+    }
+
+    @SneakyThrows
+    @Override
+    public void prepare() {
+        File archive = this.getFsObject().getDownload();
+        if (!archive.isFile()) {
+            throw new InvalidConfigurationException("Nothing to unzip for " + this.getFsObject().getName()
+                    + ", the unzip plugin must follow a plugin downloading the archive.");
+        }
+
+        Map<ZipEntry, String> selected;
+        try (ZipFile zip = new ZipFile(archive)) {
+            selected = this.select(zip);
+        }
+        if (this.isFolder()) {
+            File destination = this.extracted();
+            Assert.isTrue(FileUtils.delete(destination), "Failed to clear " + destination.getAbsolutePath());
+            this.logger.info(String.format("Extracting %d entries of %s", selected.size(), archive.getName()));
+            this.extract(archive, selected, destination);
+            Files.delete(archive.toPath());
+            return;
+        }
+
+        if (selected.isEmpty()) {
+            throw new InvalidConfigurationException("No entry of the archive for " + this.getFsObject().getName()
+                    + " matches " + (this.location != null ? this.location : "the selection"));
+        }
+        // the archive is the file's own temporary file, extract next to it and replace it
+        Map.Entry<ZipEntry, String> entry = selected.entrySet().iterator().next();
+        File file = this.getFsObject().getTemporary();
+        File extracted = new File(file.getPath() + ".unzip");
+        this.logger.info("Extracting " + entry.getKey().getName() + " of " + archive.getName());
+        try (ZipFile zip = new ZipFile(archive); InputStream in = zip.getInputStream(entry.getKey())) {
+            Files.copy(in, extracted.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(extracted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Select the entries to extract
+     * @return selected entries -> path relative to the destination, in the order of the archive
+     */
+    private Map<ZipEntry, String> select(ZipFile zip) {
+        Map<ZipEntry, String> selected = new LinkedHashMap<>();
+        String wanted = this.location == null ? null : trimSlashes(this.location);
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String relative = this.relative(entry.getName());
+            if (relative == null) {
+                continue;
+            }
+            if (wanted != null) {
+                if (relative.equals(wanted) && !entry.isDirectory()) {
+                    selected.put(entry, relative);
+                    break;
+                }
+                continue;
+            }
+            if (!this.isFolder() && entry.isDirectory()) {
+                continue;
+            }
+            if (this.isIncluded(relative)) {
+                selected.put(entry, relative);
+            }
+        }
+        return selected;
+    }
+
+    private void extract(File archive, Map<ZipEntry, String> selected, File destination) throws IOException {
+        Path root = destination.toPath().toAbsolutePath().normalize();
+        Files.createDirectories(root);
+
+        // largest entries first, each to the worker with the least to extract so far
+        List<Map.Entry<ZipEntry, String>> entries = new ArrayList<>(selected.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<ZipEntry, String> entry) -> entry.getKey().getSize()).reversed());
+        PrepareExecutor executor = this.getFsObject().getConductor().getPrepareExecutor();
+        int workers = Math.max(1, Math.min(entries.size(), executor.getParallelism()));
+        List<List<Map.Entry<ZipEntry, String>>> shares = new ArrayList<>();
+        long[] sizes = new long[workers];
+        for (int i = 0; i < workers; i++) {
+            shares.add(new ArrayList<>());
+        }
+        for (Map.Entry<ZipEntry, String> entry : entries) {
+            int smallest = 0;
+            for (int i = 1; i < workers; i++) {
+                if (sizes[i] < sizes[smallest]) {
+                    smallest = i;
+                }
+            }
+            shares.get(smallest).add(entry);
+            sizes[smallest] += Math.max(entry.getKey().getSize(), 0);
+        }
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (List<Map.Entry<ZipEntry, String>> share : shares) {
+            tasks.add(() -> this.extractShare(archive, share, root));
+        }
+        executor.invokeAll(tasks);
+    }
+
+    @SneakyThrows
+    private void extractShare(File archive, List<Map.Entry<ZipEntry, String>> share, Path root) {
+        try (ZipFile zip = new ZipFile(archive)) {
+            for (Map.Entry<ZipEntry, String> entry : share) {
+                Path target = this.target(root, entry.getKey().getName(), entry.getValue());
+                if (entry.getKey().isDirectory()) {
+                    Files.createDirectories(target);
+                    continue;
+                }
+                Files.createDirectories(target.getParent());
+                try (InputStream in = zip.getInputStream(entry.getKey())) {
+                    Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+}
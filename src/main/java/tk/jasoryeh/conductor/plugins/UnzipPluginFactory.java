@@ -0,0 +1,40 @@
+package tk.jasoryeh.conductor.plugins;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import tk.jasoryeh.conductor.V2FileSystemObject;
+import tk.jasoryeh.conductor.V2Template;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UnzipPluginFactory extends PluginFactorySecretless<UnzipPlugin> {
+    public UnzipPluginFactory(V2Template template) {
+        super(template);
+    }
+
+    @Override
+    public UnzipPlugin parse(V2FileSystemObject fsObject, JsonObject object) {
+        String prefix = object.has("unzip_prefix")
+                ? this.getTemplate().resolveVariables(object.get("unzip_prefix").getAsString()) : "";
+        List<String> include = new ArrayList<>();
+        if (object.has("unzip_include")) {
+            JsonElement element = object.get("unzip_include");
+            if (element.isJsonArray()) {
+                for (JsonElement glob : element.getAsJsonArray()) {
+                    include.add(this.getTemplate().resolveVariables(glob.getAsString()));
+                }
+            } else {
+                include.add(this.getTemplate().resolveVariables(element.getAsString()));
+            }
+        }
+        String location = object.has("unzip_location")
+                ? this.getTemplate().resolveVariables(object.get("unzip_location").getAsString()) : null;
+        return new UnzipPlugin(fsObject, prefix, include, location);
+    }
+
+    @Override
+    public String name() {
+        return "unzip";
+    }
+}
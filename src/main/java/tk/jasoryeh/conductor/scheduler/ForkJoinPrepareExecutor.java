@@ -0,0 +1,65 @@
+package tk.jasoryeh.conductor.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Prepares on a {@link ForkJoinPool}. Tasks started by a worker are forked and joined rather than waited for, a
+ * worker joining them runs them itself while they are queued, so tasks waiting for theirs cannot take every worker
+ * of the pool.
+ */
+public class ForkJoinPrepareExecutor extends PrepareExecutor {
+    private final ForkJoinPool pool;
+
+    public ForkJoinPrepareExecutor(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    @Override
+    public void invokeAll(List<? extends Runnable> tasks) {
+        boolean inside = ForkJoinTask.getPool() == this.pool;
+        List<ForkJoinTask<?>> running = new ArrayList<>();
+        for (Runnable task : tasks) {
+            ForkJoinTask<?> forkJoinTask = ForkJoinTask.adapt(task);
+            if (inside) {
+                forkJoinTask.fork();
+            } else {
+                this.pool.execute(forkJoinTask);
+            }
+            running.add(forkJoinTask);
+        }
+        this.await(running, inside);
+    }
+
+    /**
+     * Waiting on a {@link java.util.concurrent.CompletableFuture} is managed, the pool starts other workers while a
+     * worker waits
+     */
+    @Override
+    public <T> T block(Callable<T> wait) throws Exception {
+        return wait.call();
+    }
+
+    @Override
+    public int getParallelism() {
+        return this.pool.getParallelism();
+    }
+
+    @Override
+    public long queued() {
+        return this.pool.getQueuedSubmissionCount() + this.pool.getQueuedTaskCount();
+    }
+
+    @Override
+    public int active() {
+        return this.pool.getActiveThreadCount();
+    }
+
+    @Override
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+}
@@ -0,0 +1,31 @@
+package tk.jasoryeh.conductor.scheduler;
+
+import tk.jasoryeh.conductor.config.InvalidConfigurationException;
+
+/**
+ * What prepare tasks run on.
+ */
+public enum PrepareBackend {
+    /**
+     * A {@link java.util.concurrent.ForkJoinPool} of `pool` threads
+     */
+    FORKJOIN,
+    /**
+     * A virtual thread per task, at most `pool.virtual.limit` running at once. Needs Java 21, older JVMs use
+     * {@link #FORKJOIN} instead.
+     */
+    VIRTUAL;
+
+    /**
+     * @param name backend name, case insensitive
+     * @param where where the name was found, for errors
+     */
+    public static PrepareBackend of(String name, String where) {
+        try {
+            return PrepareBackend.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidConfigurationException("Unknown prepare backend " + name + " in " + where
+                    + ", expected forkjoin or virtual");
+        }
+    }
+}
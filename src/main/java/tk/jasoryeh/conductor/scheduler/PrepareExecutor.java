@@ -0,0 +1,101 @@
+package tk.jasoryeh.conductor.scheduler;
+
+import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+import tk.jasoryeh.conductor.log.Logger;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the prepare tasks of a run: preparing objects, and the work they split further, e.g. the downloads of a
+ * Jenkins batch. Tasks wait for the tasks they start, the backends make sure they cannot take every thread doing so.
+ */
+public abstract class PrepareExecutor {
+    protected final Logger logger;
+
+    protected PrepareExecutor() {
+        this.logger = new Logger(PrepareExecutor.class.getSimpleName());
+    }
+
+    /**
+     * Create the backend set by `pool.backend`, falling back to {@link PrepareBackend#FORKJOIN} when virtual threads
+     * are not supported by this JVM
+     */
+    public static PrepareExecutor create(LauncherConfiguration config) {
+        if (config.getPoolBackend() == PrepareBackend.VIRTUAL) {
+            return VirtualThreads.executor(config);
+        }
+        return new ForkJoinPrepareExecutor(config.getPoolSize());
+    }
+
+    /**
+     * Run tasks concurrently and wait for all of them
+     * @param tasks tasks to run
+     * @throws Throwable what the first task to fail threw, once all of them ended
+     */
+    public abstract void invokeAll(List<? extends Runnable> tasks);
+
+    /**
+     * Wait for something another task does, e.g. a download it started for this one, without holding up the tasks
+     * of this backend meanwhile: the task doing it may not have started yet.
+     * @param wait what waits
+     * @return what it returned
+     * @throws Exception what it threw
+     */
+    public abstract <T> T block(Callable<T> wait) throws Exception;
+
+    /**
+     * @return tasks that run on the CPU at once, to split CPU-bound work into
+     */
+    public abstract int getParallelism();
+
+    /**
+     * @return tasks waiting to run
+     */
+    public abstract long queued();
+
+    /**
+     * @return tasks running
+     */
+    public abstract int active();
+
+    public abstract void shutdown();
+
+    /**
+     * Wait for every task, then throw the first failure. Waiting from outside of the backend, what it is doing is
+     * logged every 5 seconds.
+     * @param inside whether the waiting thread runs a task of this backend
+     */
+    @SneakyThrows
+    protected void await(List<? extends Future<?>> tasks, boolean inside) {
+        Throwable failure = null;
+        for (Future<?> task : tasks) {
+            while (true) {
+                try {
+                    if (inside) {
+                        task.get();
+                    } else {
+                        task.get(5, TimeUnit.SECONDS);
+                    }
+                    break;
+                } catch (TimeoutException e) {
+                    this.logger.info("Waiting for finishing of tasks: " + this.queued() + " in line "
+                            + this.active() + " active threads");
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package tk.jasoryeh.conductor.scheduler;
+
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+
+/**
+ * Virtual threads, on JVMs that have them. This is the version for older JVMs, Java 21 and newer load the one in
+ * `src/main/java21` from `META-INF/versions/21` of the jar.
+ */
+public class VirtualThreads {
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Without virtual threads, prepare on a {@link ForkJoinPrepareExecutor} of `pool` threads instead
+     */
+    public static PrepareExecutor executor(LauncherConfiguration config) {
+        config.getLogger().warn("pool.backend=virtual needs Java 21 or newer, running on "
+                + System.getProperty("java.version") + ", preparing on a pool of " + config.getPoolSize()
+                + " threads instead");
+        return new ForkJoinPrepareExecutor(config.getPoolSize());
+    }
+}
@@ -3,7 +3,11 @@ package tk.jasoryeh.conductor.secrets;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.offbytwo.jenkins.JenkinsServer;
+import com.offbytwo.jenkins.client.JenkinsHttpClient;
 import lombok.Getter;
+import org.apache.http.impl.client.HttpClientBuilder;
+import tk.jasoryeh.conductor.http.ConductorHttpClient;
+import tk.jasoryeh.conductor.util.Digests;
 
 import java.net.URI;
 
@@ -22,13 +26,21 @@ public class JenkinsPluginSecret implements V2Secret {
     }
 
     public JenkinsServer toJenkinsAPI() {
+        HttpClientBuilder builder = ConductorHttpClient.get().builder();
         if (this.isAuthless()) {
-            return new JenkinsServer(this.host);
+            return new JenkinsServer(new JenkinsHttpClient(this.host, builder));
         } else {
-            return new JenkinsServer(this.host, this.user, this.auth);
+            return new JenkinsServer(new JenkinsHttpClient(this.host, builder, this.user, this.auth));
         }
     }
 
+    /**
+     * Identifies the server and credentials of this secret without revealing the credentials
+     */
+    public String identity() {
+        return this.host + "\n" + this.user + "\n" + (this.auth == null ? null : Digests.sha256(this.auth));
+    }
+
     public boolean isAuthless() {
         return this.user == null;
     }
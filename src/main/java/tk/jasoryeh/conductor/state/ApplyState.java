@@ -0,0 +1,83 @@
+package tk.jasoryeh.conductor.state;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import tk.jasoryeh.conductor.log.Logger;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Definition hashes of every filesystem object applied by the last successful run, used to skip unchanged objects
+ * when applying incrementally.
+ */
+public class ApplyState {
+    private static final Gson GSON = new Gson();
+    private static final Type STATE_TYPE = new TypeToken<HashMap<String, String>>() {}.getType();
+
+    private final Logger logger;
+    @Getter
+    private final File file;
+    /**
+     * path -> definition hash of the last successful run
+     */
+    private final Map<String, String> previous;
+    /**
+     * path -> definition hash of this run
+     */
+    private final Map<String, String> current = new ConcurrentHashMap<>();
+
+    public ApplyState(File file) {
+        this.logger = new Logger(ApplyState.class.getSimpleName());
+        this.file = file;
+        this.previous = this.load();
+        this.logger.info("Loaded " + this.previous.size() + " applied definitions from " + this.file.getAbsolutePath());
+    }
+
+    @SneakyThrows
+    private Map<String, String> load() {
+        if (!this.file.exists()) {
+            return new HashMap<>();
+        }
+        try (Reader reader = Files.newBufferedReader(this.file.toPath(), StandardCharsets.UTF_8)) {
+            Map<String, String> loaded = GSON.fromJson(reader, STATE_TYPE);
+            return loaded == null ? new HashMap<>() : loaded;
+        } catch (Exception e) {
+            this.logger.warn("Applied state is unreadable, everything will be applied: " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    public String previousHash(String path) {
+        return this.previous.get(path);
+    }
+
+    public void record(String path, String hash) {
+        this.current.put(path, hash);
+    }
+
+    /**
+     * Persist the hashes recorded in this run, to be called once this run was applied successfully.
+     */
+    @SneakyThrows
+    public void save() {
+        File temp = new File(this.file.getAbsolutePath() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            GSON.toJson(new TreeMap<>(this.current), writer);
+        }
+        Files.move(temp.toPath(), this.file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.logger.info("Saved " + this.current.size() + " applied definitions.");
+    }
+}
@@ -4,7 +4,15 @@ import lombok.SneakyThrows;
 import tk.jasoryeh.conductor.log.Logger;
 
 import java.io.File;
-import java.nio.file.Files;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
 public class FileUtils {
 
@@ -15,62 +23,131 @@ public class FileUtils {
     }
     private static final String FILE_DELETE_LOG_PREFIX = "FS|Deletion";
 
+    /**
+     * Delete a file, or a directory and everything in it.
+     *
+     * Directories are emptied in parallel, one task per subdirectory, and symbolic links are removed without
+     * following them. Only a summary is logged.
+     * @param f file or directory
+     * @return true if nothing exists at the path anymore
+     */
     @SneakyThrows
     public static boolean delete(File f) {
-        say(FILE_DELETE_LOG_PREFIX, "Delete: " + f.getAbsolutePath());
-        if (!f.exists()) {
-            say(FILE_DELETE_LOG_PREFIX,"File at " + f.getAbsolutePath() + " doesn't exist, we will assume it's already deleted.");
+        Path path = f.toPath();
+        BasicFileAttributes attributes = attributesOf(path);
+        if (attributes == null) {
             return true;
         }
-        if(Files.isSymbolicLink(f.toPath())) {
-            Files.delete(f.toPath());
-        }
-        if(f.isDirectory()) {
-            deleteFolder(f);
+
+        DeletionStats stats = new DeletionStats();
+        long start = System.nanoTime();
+        if (attributes.isDirectory()) {
+            DeleteTreeTask task = new DeleteTreeTask(path, stats);
+            if (ForkJoinTask.inForkJoinPool()) {
+                task.invoke();
+            } else {
+                ForkJoinPool.commonPool().invoke(task);
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            say(FILE_DELETE_LOG_PREFIX, String.format("Deleted %s: %d files, %d directories, %d links in %dms%s",
+                    f.getAbsolutePath(), stats.files.sum(), stats.directories.sum(), stats.links.sum(), millis,
+                    stats.failures.sum() == 0 ? "" : (", " + stats.failures.sum() + " failed")));
         } else {
-            deleteFile(f);
+            deleteEntry(path, attributes, stats);
         }
 
-        return !f.exists();
+        return Files.notExists(path, LinkOption.NOFOLLOW_LINKS);
     }
 
     public static boolean deleteFile(File f) {
-        say(FILE_DELETE_LOG_PREFIX, "Deleting file: " + f.getAbsolutePath());
-        if (!f.exists()) {
-            say(FILE_DELETE_LOG_PREFIX,"File at " + f.getAbsolutePath() + " doesn't exist, we will assume it's already deleted.");
-            return true;
+        return delete(f);
+    }
+
+    public static boolean deleteFolder(File f) {
+        return delete(f);
+    }
+
+    /**
+     * Read the attributes of the path itself (a single stat) without following links
+     * @return attributes or null if nothing exists at the path
+     */
+    private static BasicFileAttributes attributesOf(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return null;
         }
+    }
+
+    private static void deleteEntry(Path path, BasicFileAttributes attributes, DeletionStats stats) {
         try {
-            if(!f.delete()) {
-                say(FILE_DELETE_LOG_PREFIX, "Couldn't delete file: " + f.getAbsolutePath());
-                return false;
+            Files.deleteIfExists(path);
+            if (attributes.isDirectory()) {
+                stats.directories.increment();
+            } else if (attributes.isSymbolicLink()) {
+                stats.links.increment();
+            } else {
+                stats.files.increment();
             }
-        } catch(Exception e) {
-            say(FILE_DELETE_LOG_PREFIX, "Failed to delete file: " + f.getAbsolutePath() + "; " + e.getMessage());
-            e.printStackTrace();
-            return false;
+        } catch (IOException e) {
+            stats.failures.increment();
+            logger.child(FILE_DELETE_LOG_PREFIX).warn("Failed to delete " + path + "; " + e);
         }
-        say(FILE_DELETE_LOG_PREFIX, "File deleted: " + f.getAbsolutePath());
-        return !f.exists();
     }
 
-    public static boolean deleteFolder(File f) {
-        say(FILE_DELETE_LOG_PREFIX, "Deleting directory: " + f.getAbsolutePath());
-        if (!f.exists()) {
-            say(FILE_DELETE_LOG_PREFIX,"File at " + f.getAbsolutePath() + " doesn't exist, we will assume it's already deleted.");
-            return true;
+    private static class DeletionStats {
+        final LongAdder files = new LongAdder();
+        final LongAdder directories = new LongAdder();
+        final LongAdder links = new LongAdder();
+        final LongAdder failures = new LongAdder();
+    }
+
+    /**
+     * Empties and deletes a directory, forking a task per subdirectory.
+     */
+    private static class DeleteTreeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final DeletionStats stats;
+
+        DeleteTreeTask(Path directory, DeletionStats stats) {
+            this.directory = directory;
+            this.stats = stats;
         }
-        for (File file : f.listFiles()) {
-            say(FILE_DELETE_LOG_PREFIX, "Emptying directory file: " + file.getAbsolutePath());
-            if(file.isDirectory()) {
-                deleteFolder(file);
-            } else {
-                deleteFile(file);
+
+        @Override
+        protected void compute() {
+            List<DeleteTreeTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(this.directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes = attributesOf(entry);
+                    if (attributes == null) {
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        DeleteTreeTask task = new DeleteTreeTask(entry, this.stats);
+                        task.fork();
+                        subdirectories.add(task);
+                    } else {
+                        deleteEntry(entry, attributes, this.stats);
+                    }
+                }
+            } catch (IOException e) {
+                this.stats.failures.increment();
+                logger.child(FILE_DELETE_LOG_PREFIX).warn("Failed to list " + this.directory + "; " + e);
+            }
+
+            for (DeleteTreeTask subdirectory : subdirectories) {
+                subdirectory.join();
+            }
+            try {
+                Files.deleteIfExists(this.directory);
+                this.stats.directories.increment();
+            } catch (IOException e) {
+                this.stats.failures.increment();
+                logger.child(FILE_DELETE_LOG_PREFIX).warn("Failed to delete " + this.directory + "; " + e);
             }
         }
-        deleteFile(f);
-        say(FILE_DELETE_LOG_PREFIX, "Folder deleted: " + f.getAbsolutePath());
-        return !f.exists();
     }
-
 }
@@ -0,0 +1,309 @@
+package tk.jasoryeh.conductor.util;
+
+import lombok.Getter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the entries of a tar archive one after the other from a stream, never holding more than a header in memory.
+ *
+ * Understands ustar archives, with GNU long names and pax headers for long paths and large sizes.
+ */
+public class TarReader extends InputStream {
+    private static final int BLOCK = 512;
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK];
+    private final byte[] skipBuffer = new byte[8 * 1024];
+    // bytes of the current entry not read yet, and padding after them
+    private long remaining = 0;
+    private long padding = 0;
+    private boolean ended = false;
+
+    /**
+     * @param in the uncompressed archive
+     */
+    public TarReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Skip the rest of the current entry and read the header of the next one
+     * @return the next entry, its content is read from this stream, or null at the end of the archive
+     */
+    public Entry next() throws IOException {
+        String longName = null;
+        long paxSize = -1;
+        while (!this.ended) {
+            this.discard(this.remaining + this.padding);
+            this.remaining = 0;
+            this.padding = 0;
+
+            if (!this.readBlock()) {
+                this.ended = true;
+                break;
+            }
+            if (isZero(this.header)) {
+                // two zero blocks end the archive, the second one may be missing
+                this.ended = true;
+                break;
+            }
+            if (!this.isChecksumValid()) {
+                throw new IOException("Not a tar archive, or a corrupted one: invalid header checksum");
+            }
+
+            char type = (char) this.header[156];
+            long size = number(this.header, 124, 12);
+            this.remaining = size;
+            this.padding = (BLOCK - size % BLOCK) % BLOCK;
+
+            if (type == 'L') {
+                // GNU: name of the next entry
+                longName = trimNul(new String(this.readAll(size), StandardCharsets.UTF_8));
+                continue;
+            }
+            if (type == 'x') {
+                // pax: attributes of the next entry
+                Map<String, String> records = paxRecords(this.readAll(size));
+                if (records.containsKey("path")) {
+                    longName = records.get("path");
+                }
+                if (records.containsKey("size")) {
+                    paxSize = Long.parseLong(records.get("size"));
+                }
+                continue;
+            }
+            if (type == 'g') {
+                // pax: global attributes, nothing we use
+                continue;
+            }
+
+            if (paxSize >= 0) {
+                this.remaining = paxSize;
+                this.padding = (BLOCK - paxSize % BLOCK) % BLOCK;
+            }
+            String name = longName != null ? longName : this.name();
+            return new Entry(name, type, (int) number(this.header, 100, 8), this.remaining,
+                    string(this.header, 157, 100));
+        }
+        return null;
+    }
+
+    private String name() {
+        String name = string(this.header, 0, 100);
+        if ("ustar".equals(string(this.header, 257, 6).trim())) {
+            String prefix = string(this.header, 345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    private boolean readBlock() throws IOException {
+        int read = 0;
+        while (read < BLOCK) {
+            int count = this.in.read(this.header, read, BLOCK - read);
+            if (count == -1) {
+                if (read == 0) {
+                    return false;
+                }
+                throw new EOFException("Archive ended within a header");
+            }
+            read += count;
+        }
+        return true;
+    }
+
+    private byte[] readAll(long size) throws IOException {
+        if (size > 1024 * 1024) {
+            throw new IOException("Unreasonably large tar extension header: " + size + " bytes");
+        }
+        byte[] data = new byte[(int) size];
+        int read = 0;
+        while (read < data.length) {
+            int count = this.read(data, read, data.length - read);
+            if (count == -1) {
+                throw new EOFException("Archive ended within an extension header");
+            }
+            read += count;
+        }
+        return data;
+    }
+
+    private boolean isChecksumValid() {
+        long expected = number(this.header, 148, 8);
+        long sum = 0;
+        for (int i = 0; i < BLOCK; i++) {
+            // the checksum field itself counts as spaces
+            sum += (i >= 148 && i < 156) ? ' ' : (this.header[i] & 0xff);
+        }
+        return sum == expected;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (this.remaining <= 0) {
+            return -1;
+        }
+        int read = this.in.read();
+        if (read == -1) {
+            throw new EOFException("Archive ended within an entry");
+        }
+        this.remaining--;
+        return read;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (this.remaining <= 0) {
+            return -1;
+        }
+        int read = this.in.read(buffer, offset, (int) Math.min(length, this.remaining));
+        if (read == -1) {
+            throw new EOFException("Archive ended within an entry");
+        }
+        this.remaining -= read;
+        return read;
+    }
+
+    private void discard(long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count) {
+            // reading instead of skipping, skip() of decompressing streams reads anyway
+            int read = this.in.read(this.skipBuffer, 0, (int) Math.min(this.skipBuffer.length, count - skipped));
+            if (read == -1) {
+                throw new EOFException("Archive ended within an entry");
+            }
+            skipped += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String string(byte[] block, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && block[end] != 0) {
+            end++;
+        }
+        return new String(block, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String trimNul(String string) {
+        int end = string.indexOf('\0');
+        return end < 0 ? string : string.substring(0, end);
+    }
+
+    /**
+     * Octal number, or big-endian binary when the first byte has its high bit set (GNU, for large values)
+     */
+    private static long number(byte[] block, int offset, int length) {
+        if ((block[offset] & 0x80) != 0) {
+            long value = block[offset] & 0x7f;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (block[offset + i] & 0xff);
+            }
+            return value;
+        }
+        int i = offset;
+        int end = offset + length;
+        while (i < end && block[i] == ' ') {
+            i++;
+        }
+        long value = 0;
+        for (; i < end && block[i] >= '0' && block[i] <= '7'; i++) {
+            value = value * 8 + (block[i] - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Parse pax records, "<length> <key>=<value>\n" where the length counts the bytes of the whole record. Records
+     * are split on the bytes, only keys and values are decoded: values such as paths are UTF-8.
+     * @return key -> value, later records replace earlier ones
+     */
+    private static Map<String, String> paxRecords(byte[] records) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        int position = 0;
+        while (position < records.length && records[position] != 0) {
+            int length = 0;
+            int space = position;
+            while (space < records.length && records[space] >= '0' && records[space] <= '9') {
+                length = length * 10 + (records[space] - '0');
+                space++;
+            }
+            int end = position + length;
+            if (space == position || space >= records.length || records[space] != ' '
+                    || end <= space || end > records.length || records[end - 1] != '\n') {
+                throw new IOException("Corrupted pax header: malformed record at byte " + position);
+            }
+            int equals = space + 1;
+            while (equals < end - 1 && records[equals] != '=') {
+                equals++;
+            }
+            if (equals == end - 1) {
+                throw new IOException("Corrupted pax header: record without a value at byte " + position);
+            }
+            values.put(new String(records, space + 1, equals - space - 1, StandardCharsets.UTF_8),
+                    new String(records, equals + 1, end - 1 - equals - 1, StandardCharsets.UTF_8));
+            position = end;
+        }
+        return values;
+    }
+
+    /**
+     * Header of an entry of the archive
+     */
+    public static class Entry {
+        @Getter
+        private final String name;
+        private final char type;
+        @Getter
+        private final int mode;
+        @Getter
+        private final long size;
+        /**
+         * Target of a link
+         */
+        @Getter
+        private final String linkName;
+
+        Entry(String name, char type, int mode, long size, String linkName) {
+            this.name = name;
+            this.type = type;
+            this.mode = mode;
+            this.size = size;
+            this.linkName = linkName;
+        }
+
+        public boolean isFile() {
+            return (this.type == '0' || this.type == '\0' || this.type == '7') && !this.name.endsWith("/");
+        }
+
+        public boolean isDirectory() {
+            // old archives mark directories with a trailing slash only
+            return this.type == '5' || ((this.type == '0' || this.type == '\0') && this.name.endsWith("/"));
+        }
+
+        public boolean isLink() {
+            return this.type == '1' || this.type == '2';
+        }
+    }
+}
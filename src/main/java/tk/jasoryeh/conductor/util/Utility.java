@@ -3,8 +3,7 @@ package tk.jasoryeh.conductor.util;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import lombok.SneakyThrows;
-import org.javalite.http.Get;
-import org.javalite.http.Http;
+import tk.jasoryeh.conductor.http.ConductorHttpClient;
 import tk.jasoryeh.conductor.log.Logger;
 
 import java.io.File;
@@ -14,7 +13,6 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.util.List;
-import java.util.regex.Pattern;
 
 public class Utility {
 
@@ -61,33 +59,9 @@ public class Utility {
         return new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
     }
 
+    @SneakyThrows
     public static String remoteFileToString(String url) {
-        boolean basic = false;
-        String[] basicAuth = null;
-        String locationDomain = url.split("/")[2];
-        if(locationDomain.contains("@")) {
-            basic = true;
-            String authString = locationDomain.split("@")[0];
-            basicAuth = authString.split(":", 2);
-            url = url.replaceFirst(Pattern.quote(authString + "@"), "");
-        }
-        Get request;
-        request = Http.get(url);
-        if (basic && basicAuth.length > 0) {
-            if (basicAuth.length == 1) {
-                request = request.basic(basicAuth[0]);
-            } else {
-                request = request.basic(basicAuth[0], basicAuth[1]);
-            }
-        }
-        request.header("User-Agent", "Conductor, Java");
-
-        int responseCode = request.responseCode();
-        if(!String.valueOf(responseCode).startsWith("2")) {
-            logger.warn("[Download] Remote server at " + url + " returned a " + responseCode +
-                            " (" + request.responseMessage() + "), " + "we ignored this, but you should make sure this is correct.");
-        }
-        return request.text();
+        return ConductorHttpClient.get().getString(url);
     }
 
     public static String replaceLast(String string, String toReplace, String replacement) {
@@ -0,0 +1,102 @@
+package tk.jasoryeh.conductor.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares every task on a virtual thread of its own, with a global limit of tasks running at once. Tasks waiting
+ * for downloads and disks only hold on to their virtual thread, the carrier threads run other tasks meanwhile.
+ *
+ * A task waiting for the tasks it started gives its permit to them until they ended, so folders waiting for their
+ * children never take every permit.
+ */
+public class VirtualThreadPrepareExecutor extends PrepareExecutor {
+    /**
+     * Set while the thread runs a task holding a permit
+     */
+    private static final ThreadLocal<Boolean> HOLDING = new ThreadLocal<>();
+
+    private final int limit;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("conductor-prepare-", 0).factory());
+
+    public VirtualThreadPrepareExecutor(int limit) {
+        this.limit = Math.max(1, limit);
+        this.permits = new Semaphore(this.limit, true);
+    }
+
+    @Override
+    public void invokeAll(List<? extends Runnable> tasks) {
+        List<Future<?>> running = new ArrayList<>();
+        for (Runnable task : tasks) {
+            running.add(this.executor.submit(() -> this.run(task)));
+        }
+        boolean inside = HOLDING.get() != null;
+        if (inside) {
+            this.permits.release();
+        }
+        try {
+            this.await(running, inside);
+        } finally {
+            if (inside) {
+                this.permits.acquireUninterruptibly();
+            }
+        }
+    }
+
+    @Override
+    public <T> T block(Callable<T> wait) throws Exception {
+        boolean inside = HOLDING.get() != null;
+        if (inside) {
+            this.permits.release();
+        }
+        try {
+            return wait.call();
+        } finally {
+            if (inside) {
+                this.permits.acquireUninterruptibly();
+            }
+        }
+    }
+
+    private void run(Runnable task) {
+        this.waiting.incrementAndGet();
+        this.permits.acquireUninterruptibly();
+        this.waiting.decrementAndGet();
+        HOLDING.set(Boolean.TRUE);
+        try {
+            task.run();
+        } finally {
+            HOLDING.remove();
+            this.permits.release();
+        }
+    }
+
+    @Override
+    public int getParallelism() {
+        return Math.min(this.limit, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public long queued() {
+        return this.waiting.get();
+    }
+
+    @Override
+    public int active() {
+        return this.limit - this.permits.availablePermits();
+    }
+
+    @Override
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+}
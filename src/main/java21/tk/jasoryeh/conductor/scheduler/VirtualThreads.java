@@ -0,0 +1,21 @@
+package tk.jasoryeh.conductor.scheduler;
+
+import tk.jasoryeh.conductor.config.LauncherConfiguration;
+
+/**
+ * Virtual threads, on JVMs that have them. This is the version for Java 21 and newer, older JVMs load the one in
+ * `src/main/java`.
+ */
+public class VirtualThreads {
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Prepare on virtual threads, at most `pool.virtual.limit` at once
+     */
+    public static PrepareExecutor executor(LauncherConfiguration config) {
+        config.getLogger().info("Preparing on virtual threads, " + config.getVirtualPoolLimit() + " at once");
+        return new VirtualThreadPrepareExecutor(config.getVirtualPoolLimit());
+    }
+}